@@ -0,0 +1,47 @@
+package dekra.user.benchmark;
+
+import dekra.user.UserSpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The application as started by the benchmarks and the load test: in process, against the
+ * embedded H2 database, on a random port and logging only warnings. Rate limiting is off unless
+ * the arguments turn it on: all the load comes from a single client.
+ */
+final class BenchmarkApplication {
+
+    private static final String RATE_LIMIT_ENABLED = "--security.rate-limit.enabled=";
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Start the application
+     * @param args, application arguments, they override the defaults
+     * @return the application context
+     */
+    static ConfigurableApplicationContext start(String... args) {
+        return new SpringApplicationBuilder(UserSpringBootApplication.class)
+                .properties("server.port=0", "logging.level.root=WARN", "spring.main.banner-mode=off")
+                .run(arguments(args).toArray(new String[0]));
+    }
+
+    /**
+     * Arguments of an application under load, rate limiting off unless they turn it on
+     * @param args, application arguments
+     * @return the arguments, with the defaults they do not override
+     */
+    static List<String> arguments(String... args) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        // application.properties enables it, so it is turned off by argument rather than by default property
+        if (arguments.stream().noneMatch(argument -> argument.startsWith(RATE_LIMIT_ENABLED))) {
+            arguments.add(RATE_LIMIT_ENABLED + "false");
+        }
+        return arguments;
+    }
+}
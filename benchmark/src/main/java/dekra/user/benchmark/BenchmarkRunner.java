@@ -0,0 +1,43 @@
+package dekra.user.benchmark;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with a fixed JVM configuration and writes the results as JSON, so runs on
+ * different commits can be compared. Any JMH command line option overrides the defaults, for
+ * instance to run a single benchmark: java -jar benchmarks.jar JwtBenchmark -rff jwt.json
+ */
+public class BenchmarkRunner {
+
+    static final String RESULT_FILE = "jmh-result.json";
+
+    static final String[] JVM_ARGS = {"-Xms1g", "-Xmx1g", "-XX:+UseG1GC", "-XX:+AlwaysPreTouch"};
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(BenchmarkRunner.class.getPackage().getName() + "\\..*");
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(RESULT_FILE);
+        }
+        if (!commandLine.getJvmArgs().hasValue()) {
+            options.jvmArgs(JVM_ARGS);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,132 @@
+package dekra.user.benchmark;
+
+import dekra.user.security.JWTAuthenticationCache;
+import dekra.user.security.JWTAuthorizationFilter;
+import dekra.user.security.JWTDenylist;
+import dekra.user.security.JWTTokenIssuer;
+import dekra.user.security.SecurityConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * JWT issuance as done on login, by the {@link JWTTokenIssuer} and by the jjwt builder the login
+ * used before, and the authorization filter run on every request, with the authentication cache
+ * and with every token parsed and verified, with a thousand other tokens revoked.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private static final String SECRET = "mySecretKey";
+
+    private JWTTokenIssuer tokenIssuer;
+
+    private JWTAuthorizationFilter cachedFilter;
+
+    private JWTAuthorizationFilter uncachedFilter;
+
+    private String authorization;
+
+    @Setup
+    public void setUp() throws ServletException, IOException {
+        tokenIssuer = new JWTTokenIssuer(SECRET, Duration.ofMinutes(10), "");
+        // other tokens revoked, the one of the benchmark goes through the bloom filter
+        JWTDenylist denylist = new JWTDenylist(10000, "");
+        long expiration = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        for (int i = 0; i < 1000; i++) {
+            denylist.revoke("revoked" + i, expiration);
+        }
+        cachedFilter = new JWTAuthorizationFilter(SECRET, "", new JWTAuthenticationCache(10000), denylist,
+                SecurityConfiguration.ROUTES, new SimpleMeterRegistry());
+        uncachedFilter = new JWTAuthorizationFilter(SECRET, "", new JWTAuthenticationCache(0), denylist,
+                SecurityConfiguration.ROUTES, new SimpleMeterRegistry());
+        authorization = issueToken();
+        if (filter(uncachedFilter, "DELETE", "/api/user/delete/1").getStatus() != 200) {
+            throw new IllegalStateException("The issued token is not accepted by the filter");
+        }
+    }
+
+    @Benchmark
+    public String issueToken() {
+        return tokenIssuer.issue("benchmark");
+    }
+
+    /**
+     * Token issuance as the login did it before {@link JWTTokenIssuer}
+     */
+    @Benchmark
+    public String issueTokenWithBuilder() {
+        List<GrantedAuthority> grantedAuthorities = AuthorityUtils
+                .commaSeparatedStringToAuthorityList("ROLE_USER");
+
+        String token = Jwts
+                .builder()
+                .setId("sergioJWT")
+                .setSubject("benchmark")
+                .claim("authorities",
+                        grantedAuthorities.stream()
+                                .map(GrantedAuthority::getAuthority)
+                                .collect(Collectors.toList()))
+                .setIssuedAt(new Date(System.currentTimeMillis()))
+                .setExpiration(new Date(System.currentTimeMillis() + 600000))
+                .signWith(SignatureAlgorithm.HS512,
+                        SECRET.getBytes()).compact();
+
+        return "Bearer " + token;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse filterCachedToken() throws ServletException, IOException {
+        return filter(cachedFilter, "DELETE", "/api/user/delete/1");
+    }
+
+    @Benchmark
+    public MockHttpServletResponse filterUncachedToken() throws ServletException, IOException {
+        return filter(uncachedFilter, "DELETE", "/api/user/delete/1");
+    }
+
+    /**
+     * A public route with a token, which is not read
+     */
+    @Benchmark
+    public MockHttpServletResponse filterPublicRoute() throws ServletException, IOException {
+        return filter(uncachedFilter, "GET", "/api/user/list");
+    }
+
+    private MockHttpServletResponse filter(JWTAuthorizationFilter filter, String method, String path) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setServletPath(path);
+        request.addHeader("Authorization", authorization);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
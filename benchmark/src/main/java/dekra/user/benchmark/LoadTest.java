@@ -0,0 +1,417 @@
+package dekra.user.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dekra.user.model.entities.UserImportRequest;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End to end, open-loop load test. The application is started in process against H2 and a mix
+ * of logins, creations, updates, deletions and listings is sent at a fixed rate, whatever the
+ * response times are. Latencies are measured from the time each request was due to be sent,
+ * not from the time it was actually sent, so stalls of the server or of the generator are not
+ * hidden (coordinated omission). Requests still running a minute after the last one was sent
+ * are counted as failed, with the latency they have reached, and their late responses ignored.
+ * After a warm up the throughput and the p50, p99 and p99.9 latencies of each endpoint are
+ * reported and checked against the SLOs.
+ *
+ * Configured with system properties:
+ * load.rate, requests per second (20)
+ * load.warmup and load.duration, seconds of warm up and of measurement (10 and 30)
+ * load.mix, weight of each endpoint (login=10,create=5,update=20,delete=5,list=60)
+ * load.seed-users, users created before the test to be updated (100)
+ * load.max-in-flight, requests in progress above which new ones are counted as failed (5000)
+ * load.slo.p99, load.slo.p999, latency SLOs in milliseconds for every endpoint (1000 and 3000),
+ * overridden per endpoint by load.slo.[endpoint].p99 and load.slo.[endpoint].p999
+ * load.slo.error-rate, highest ratio of failed requests of each endpoint (0.01)
+ * load.app-args, application arguments separated by spaces, e.g. --security.bcrypt.strength=8
+ * load.base-url, url of an application already running, to test it instead of starting one
+ */
+public final class LoadTest {
+
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+    private static final String PASSWORD = "load-password";
+
+    private static final int SEED_BATCH_SIZE = 500;
+
+    enum Endpoint { LOGIN, CREATE, UPDATE, DELETE, LIST }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ExecutorService clientExecutor = Executors.newFixedThreadPool(4, runnable -> {
+        Thread thread = new Thread(runnable, "load-client");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(clientExecutor)
+            .build();
+
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    // users of every run are told apart, several runs can target the same application
+    private final String userPrefix = "load" + Long.toString(System.currentTimeMillis(), 36) + "-";
+
+    private final AtomicLong userSequence = new AtomicLong();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Queue<Long> deletableIds = new ConcurrentLinkedQueue<>();
+
+    private final List<Long> updatableIds = new ArrayList<>();
+
+    private final Map<Endpoint, Integer> mix;
+
+    private final int totalWeight;
+
+    private final int rate;
+
+    private final int maxInFlight;
+
+    private String baseUrl;
+
+    private String authorization;
+
+    private LoadTest(Map<Endpoint, Integer> mix, int rate, int maxInFlight) {
+        this.mix = mix;
+        this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        this.rate = rate;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = Integer.getInteger("load.rate", 20);
+        String baseUrl = System.getProperty("load.base-url");
+
+        Map<Endpoint, EndpointStats> stats;
+        if (baseUrl != null) {
+            stats = measure(baseUrl, rate);
+        } else {
+            try (ConfigurableApplicationContext context = BenchmarkApplication.start(appArgs())) {
+                stats = measure("http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort(), rate);
+            }
+        }
+        report(stats, duration());
+        List<String> breaches = checkSlos(stats);
+        if (!breaches.isEmpty()) {
+            breaches.forEach(breach -> System.out.println("SLO breached: " + breach));
+            throw new IllegalStateException(breaches.size() + " SLO breached");
+        }
+        System.out.println("All SLOs met");
+    }
+
+    /**
+     * Seed a running application, warm it up and measure it at a determined rate
+     * @param baseUrl, the url of the application
+     * @param rate, requests per second
+     * @return the statistics of the measured requests
+     */
+    static Map<Endpoint, EndpointStats> measure(String baseUrl, int rate) throws IOException, InterruptedException {
+        int warmup = Integer.getInteger("load.warmup", 10);
+        int duration = duration();
+        Map<Endpoint, Integer> mix = parseMix(System.getProperty("load.mix", "login=10,create=5,update=20,delete=5,list=60"));
+
+        LoadTest loadTest = new LoadTest(mix, rate, Integer.getInteger("load.max-in-flight", 5000));
+        try {
+            loadTest.baseUrl = baseUrl;
+            loadTest.seed(Integer.getInteger("load.seed-users", 100), deletionsNeeded(mix, rate, warmup + duration));
+
+            System.out.printf("Warming up %s for %d s at %d requests/s%n", baseUrl, warmup, rate);
+            loadTest.run(warmup);
+            System.out.printf("Measuring %s for %d s at %d requests/s%n", baseUrl, duration, rate);
+            return loadTest.run(duration);
+        } finally {
+            loadTest.clientExecutor.shutdownNow();
+        }
+    }
+
+    static int duration() {
+        return Integer.getInteger("load.duration", 30);
+    }
+
+    static String[] appArgs() {
+        String appArgs = System.getProperty("load.app-args", "").trim();
+        return appArgs.isEmpty() ? new String[0] : appArgs.split("\\s+");
+    }
+
+    /**
+     * Log in as the administrator and create the users to update and to delete, in batches
+     * @param updatable, the users to create for the updates
+     * @param deletable, the users to create for the deletions
+     */
+    private void seed(int updatable, int deletable) throws IOException, InterruptedException {
+        HttpResponse<String> login = client.send(request(Endpoint.LOGIN), HttpResponse.BodyHandlers.ofString());
+        if (login.statusCode() != 200) {
+            throw new IllegalStateException("Login failed with status " + login.statusCode() + ": " + login.body());
+        }
+        authorization = objectMapper.readTree(login.body()).path("token").asText();
+
+        System.out.printf("Creating %d users%n", updatable + deletable);
+        for (int created = 0; created < updatable + deletable; created += SEED_BATCH_SIZE) {
+            List<UserImportRequest> rows = new ArrayList<>();
+            for (int i = created; i < Math.min(created + SEED_BATCH_SIZE, updatable + deletable); i++) {
+                rows.add(newUser(userPrefix + userSequence.incrementAndGet()));
+            }
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/user/batch"))
+                    .header("Authorization", authorization)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(rows)))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            // newline delimited json from the servlet app, a json array from the reactive one
+            for (JsonNode row : objectMapper.readerFor(JsonNode.class).<JsonNode>readValues(response.body()).readAll()) {
+                if (!row.path("id").isNumber()) {
+                    throw new IllegalStateException("User not created: " + row);
+                }
+                if (updatableIds.size() < updatable) {
+                    updatableIds.add(row.path("id").asLong());
+                } else {
+                    deletableIds.add(row.path("id").asLong());
+                }
+            }
+        }
+    }
+
+    /**
+     * Send requests at the configured rate, each one on its due time
+     * @param seconds, how long to send requests for
+     * @return the statistics of the requests sent, once they have all finished or been given up
+     */
+    private Map<Endpoint, EndpointStats> run(int seconds) throws InterruptedException {
+        Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            stats.put(endpoint, new EndpointStats());
+        }
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long requests = (long) seconds * rate;
+        Set<SentRequest> unfinished = ConcurrentHashMap.newKeySet();
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long dueTime = start + i * interval;
+            long wait = dueTime - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(nextEndpoint(), dueTime, stats, unfinished);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (!unfinished.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // the slowest requests, leaving them out would hide them from the percentiles
+        for (SentRequest request : unfinished) {
+            request.finish(false);
+        }
+        return stats;
+    }
+
+    private void send(Endpoint endpoint, long dueTime, Map<Endpoint, EndpointStats> stats, Set<SentRequest> unfinished) {
+        EndpointStats endpointStats = stats.get(endpoint);
+        HttpRequest request = request(endpoint);
+        if (request == null || inFlight.incrementAndGet() > maxInFlight) {
+            if (request != null) {
+                inFlight.decrementAndGet();
+            }
+            endpointStats.record(System.nanoTime() - dueTime, false);
+            return;
+        }
+        SentRequest sent = new SentRequest(endpointStats, dueTime, unfinished);
+        unfinished.add(sent);
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            inFlight.decrementAndGet();
+            boolean ok = error == null && response.statusCode() < 400;
+            sent.finish(ok);
+            if (ok && endpoint == Endpoint.CREATE) {
+                try {
+                    deletableIds.add(objectMapper.readTree(response.body()).path("id").asLong());
+                } catch (IOException e) {
+                    // the request succeeded, the user is just not reused for deletions
+                }
+            }
+        });
+    }
+
+    /**
+     * Build the next request to an endpoint
+     * @param endpoint, the endpoint
+     * @return the request, or null if there is nothing left to delete
+     */
+    private HttpRequest request(Endpoint endpoint) {
+        switch (endpoint) {
+            case LOGIN:
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/auth/login?username=admin&password=admin"))
+                        .POST(HttpRequest.BodyPublishers.noBody()).build();
+            case CREATE:
+                long n = userSequence.incrementAndGet();
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/api/user/create?username=" + userPrefix + n + "&password=" + PASSWORD
+                        + "&email=" + userPrefix + n + "@user.com&age=30&active=true"))
+                        .POST(HttpRequest.BodyPublishers.noBody()).build();
+            case UPDATE:
+                Long updatableId = updatableIds.get(random.nextInt(updatableIds.size()));
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/api/user/update/" + updatableId + "?name=Name" + random.nextInt(1000)))
+                        .header("Authorization", authorization)
+                        .method("PATCH", HttpRequest.BodyPublishers.noBody()).build();
+            case DELETE:
+                Long deletableId = deletableIds.poll();
+                return deletableId == null ? null : HttpRequest.newBuilder(URI.create(baseUrl + "/api/user/delete/" + deletableId))
+                        .header("Authorization", authorization)
+                        .DELETE().build();
+            default:
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/api/user/list?size=50"))
+                        .header("Accept", "application/json")
+                        .GET().build();
+        }
+    }
+
+    private Endpoint nextEndpoint() {
+        int pick = random.nextInt(totalWeight);
+        for (Map.Entry<Endpoint, Integer> entry : mix.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty load mix");
+    }
+
+    private static UserImportRequest newUser(String username) {
+        UserImportRequest user = new UserImportRequest();
+        user.setUsername(username);
+        user.setPassword(PASSWORD);
+        user.setEmail(username + "@user.com");
+        user.setActive(true);
+        user.setAge(30);
+        return user;
+    }
+
+    static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.trim().split("=");
+            weights.put(Endpoint.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(weight[1].trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * Users to create beforehand so that no deletion runs out of users, with some margin
+     */
+    private static int deletionsNeeded(Map<Endpoint, Integer> mix, int rate, int seconds) {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        return (int) Math.ceil(1.2 * rate * seconds * mix.getOrDefault(Endpoint.DELETE, 0) / total);
+    }
+
+    static void report(Map<Endpoint, EndpointStats> stats, int seconds) {
+        System.out.printf("%-8s %9s %7s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        stats.forEach((endpoint, endpointStats) -> {
+            Histogram histogram = endpointStats.latencies;
+            System.out.printf(Locale.ROOT, "%-8s %9d %7d %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                    endpoint.name().toLowerCase(Locale.ROOT), histogram.getTotalCount(), endpointStats.errors.sum(),
+                    (double) histogram.getTotalCount() / seconds, millis(histogram, 50), millis(histogram, 99),
+                    millis(histogram, 99.9), histogram.getMaxValue() / 1000.0);
+        });
+    }
+
+    static List<String> checkSlos(Map<Endpoint, EndpointStats> stats) {
+        double errorRate = Double.parseDouble(System.getProperty("load.slo.error-rate", "0.01"));
+        List<String> breaches = new ArrayList<>();
+        stats.forEach((endpoint, endpointStats) -> {
+            long requests = endpointStats.latencies.getTotalCount();
+            if (requests == 0) {
+                return;
+            }
+            String name = endpoint.name().toLowerCase(Locale.ROOT);
+            checkLatency(breaches, name, "p99", millis(endpointStats.latencies, 99), 1000);
+            checkLatency(breaches, name, "p999", millis(endpointStats.latencies, 99.9), 3000);
+            double errors = (double) endpointStats.errors.sum() / requests;
+            if (errors > errorRate) {
+                breaches.add(String.format(Locale.ROOT, "%s error rate %.4f > %.4f", name, errors, errorRate));
+            }
+        });
+        return breaches;
+    }
+
+    private static void checkLatency(List<String> breaches, String endpoint, String percentile, double latency, long defaultSlo) {
+        long slo = Long.getLong("load.slo." + endpoint + "." + percentile, Long.getLong("load.slo." + percentile, defaultSlo));
+        if (latency > slo) {
+            breaches.add(String.format(Locale.ROOT, "%s %s %.2f ms > %d ms", endpoint, percentile, latency, slo));
+        }
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * A request sent and not recorded yet. It is recorded once, when it completes or when the run
+     * stops waiting for it, whichever comes first
+     */
+    private static final class SentRequest {
+
+        private final EndpointStats stats;
+
+        private final long dueTime;
+
+        private final Set<SentRequest> unfinished;
+
+        private SentRequest(EndpointStats stats, long dueTime, Set<SentRequest> unfinished) {
+            this.stats = stats;
+            this.dueTime = dueTime;
+            this.unfinished = unfinished;
+        }
+
+        private void finish(boolean ok) {
+            if (unfinished.remove(this)) {
+                stats.record(System.nanoTime() - dueTime, ok);
+            }
+        }
+    }
+
+    /**
+     * Latencies, in microseconds, and failures of the requests to an endpoint
+     */
+    static final class EndpointStats {
+
+        private final Histogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+
+        private final LongAdder errors = new LongAdder();
+
+        private void record(long latencyNanos, boolean ok) {
+            latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_LATENCY_MICROS));
+            if (!ok) {
+                errors.increment();
+            }
+        }
+    }
+}
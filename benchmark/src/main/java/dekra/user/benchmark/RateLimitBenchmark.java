@@ -0,0 +1,76 @@
+package dekra.user.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dekra.user.security.RateLimitFilter;
+import dekra.user.security.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limiting of the logins: a burst from one client shed by the filter, and logins of
+ * different clients and usernames let through, each one creating its buckets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimitBenchmark {
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private RateLimitFilter filter;
+
+    @Setup
+    public void setUp() throws IOException {
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setCapacity(5);
+        limit.setRefillPerSecond(0.2);
+        RateLimitProperties.Endpoint login = new RateLimitProperties.Endpoint();
+        login.setPath("/auth/login");
+        login.setIp(limit);
+        login.setUsername(limit);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getEndpoints().put("login", login);
+        filter = new RateLimitFilter(properties, new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public MockHttpServletResponse rejectedLogin() throws ServletException, IOException {
+        return login("10.0.0.1", "admin");
+    }
+
+    @Benchmark
+    public MockHttpServletResponse allowedLogin() throws ServletException, IOException {
+        long n = sequence.incrementAndGet();
+        return login("10." + (n >>> 16 & 255) + "." + (n >>> 8 & 255) + "." + (n & 255), "user" + n);
+    }
+
+    private MockHttpServletResponse login(String ip, String username) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/login");
+        request.setServletPath("/auth/login");
+        request.setRemoteAddr(ip);
+        request.setParameter("username", username);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,149 @@
+package dekra.user.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Throughput of the servlet app against the reactive one. Both stacks get the same load test,
+ * at increasing rates, one after the other on the same machine. Each app runs in its own JVM,
+ * started from its archive with the same JVM options, so neither shares its heap and cores with
+ * the load generator. The highest rate each stack sustains within the SLOs is reported.
+ *
+ * Configured with the system properties of {@link LoadTest} and:
+ * compare.rates, requests per second to try, in increasing order (20,50,100,200)
+ * compare.jvm-args, options of the JVMs of both apps, separated by spaces (none)
+ * compare.servlet-war, the war of the servlet app (../user/target/user-0.0.1-SNAPSHOT.war)
+ * compare.reactive-jar, the jar of the reactive app (../user-reactive/target/user-reactive-0.0.1-SNAPSHOT.jar)
+ */
+public final class StackComparison {
+
+    private static final String DEFAULT_SERVLET_WAR = "../user/target/user-0.0.1-SNAPSHOT.war";
+
+    private static final String DEFAULT_REACTIVE_JAR = "../user-reactive/target/user-reactive-0.0.1-SNAPSHOT.jar";
+
+    private StackComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> rates = Arrays.stream(System.getProperty("compare.rates", "20,50,100,200").split(","))
+                .map(String::trim).map(Integer::valueOf).collect(Collectors.toList());
+        Map<String, Integer> sustained = new LinkedHashMap<>();
+        sustained.put("servlet", startAndLoad("servlet", System.getProperty("compare.servlet-war", DEFAULT_SERVLET_WAR), rates));
+        sustained.put("reactive", startAndLoad("reactive", System.getProperty("compare.reactive-jar", DEFAULT_REACTIVE_JAR), rates));
+
+        System.out.println();
+        sustained.forEach((stack, rate) -> System.out.printf("%-8s highest rate within SLOs: %s%n", stack,
+                rate == null ? "none of " + rates : rate + " requests/s"));
+    }
+
+    /**
+     * Start a stack and load it at increasing rates until it breaches an SLO
+     * @param stack, the name of the stack
+     * @param archive, the executable archive of the application
+     * @param rates, the rates to try
+     * @return the highest rate within the SLOs, null if not even the first one is
+     */
+    private static Integer startAndLoad(String stack, String archive, List<Integer> rates) throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        String baseUrl = "http://localhost:" + port;
+        Process app = start(stack, new File(archive), port);
+        try {
+            awaitStarted(stack, app, baseUrl);
+            return highestSustainedRate(stack, baseUrl, rates);
+        } finally {
+            app.destroy();
+            app.waitFor(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Load a running stack at increasing rates until it breaches an SLO
+     * @param stack, the name of the stack
+     * @param baseUrl, the url of the application
+     * @param rates, the rates to try
+     * @return the highest rate within the SLOs, null if not even the first one is
+     */
+    private static Integer highestSustainedRate(String stack, String baseUrl, List<Integer> rates) throws IOException, InterruptedException {
+        Integer sustained = null;
+        for (int rate : rates) {
+            Map<LoadTest.Endpoint, LoadTest.EndpointStats> stats = LoadTest.measure(baseUrl, rate);
+            System.out.printf("%n%s at %d requests/s%n", stack, rate);
+            LoadTest.report(stats, LoadTest.duration());
+            List<String> breaches = LoadTest.checkSlos(stats);
+            if (!breaches.isEmpty()) {
+                breaches.forEach(breach -> System.out.println("SLO breached: " + breach));
+                break;
+            }
+            sustained = rate;
+        }
+        return sustained;
+    }
+
+    /**
+     * Start an application in its own JVM, with the JVM options shared by both stacks
+     * @param stack, the name of the stack
+     * @param archive, the executable archive of the application
+     * @param port, the port to listen on
+     * @return the process of the application
+     */
+    private static Process start(String stack, File archive, int port) throws IOException {
+        if (!archive.isFile()) {
+            throw new IllegalStateException("The " + stack + " app was not found at " + archive.getAbsolutePath() + ", build it first");
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        String jvmArgs = System.getProperty("compare.jvm-args", "").trim();
+        if (!jvmArgs.isEmpty()) {
+            command.addAll(Arrays.asList(jvmArgs.split("\\s+")));
+        }
+        command.addAll(List.of("-jar", archive.getAbsolutePath(), "--server.port=" + port, "--logging.level.root=WARN"));
+        command.addAll(BenchmarkApplication.arguments(LoadTest.appArgs()));
+        Path log = Files.createTempFile("user-" + stack, ".log");
+        System.out.println("Starting the " + stack + " app on port " + port + ", log at " + log);
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+    }
+
+    /**
+     * Wait until an app answers its health check
+     * @param stack, the name of the stack
+     * @param process, the process of the app
+     * @param baseUrl, the url of the app
+     */
+    private static void awaitStarted(String stack, Process process, String baseUrl) throws InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("The " + stack + " app exited with status " + process.exitValue());
+            }
+            try {
+                if (client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health")).build(),
+                        HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("The " + stack + " app did not start in 2 minutes");
+    }
+}
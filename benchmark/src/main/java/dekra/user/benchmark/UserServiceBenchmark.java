@@ -0,0 +1,94 @@
+package dekra.user.benchmark;
+
+import dekra.user.model.entities.User;
+import dekra.user.model.entities.UserSummary;
+import dekra.user.services.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CRUD of {@link UserService} against the embedded H2 database, through the whole application
+ * context: transactions, second level cache and Hibernate
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+
+    private UserService userService;
+
+    private Long userId;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        userService = context.getBean(UserService.class);
+        userId = userService.createUser(newUser()).getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public User findUserById() {
+        return userService.findUserById(userId);
+    }
+
+    /**
+     * Update as the controller did before the update use case: load and save, one transaction each
+     */
+    @Benchmark
+    public User saveUser() {
+        User user = userService.findUserById(userId);
+        user.setName("Name" + sequence.incrementAndGet());
+        return userService.saveUser(user);
+    }
+
+    /**
+     * Update use case: the new values are validated and written in a single statement, then the
+     * summary is read back
+     */
+    @Benchmark
+    public UserSummary updateUser() {
+        return userService.updateUser(userId, "Name" + sequence.incrementAndGet(), null, true, null, null);
+    }
+
+    @Benchmark
+    public User createUser() {
+        return userService.createUser(newUser());
+    }
+
+    @Benchmark
+    public void createAndDeleteUser() {
+        userService.deleteUser(userService.createUser(newUser()).getId());
+    }
+
+    private User newUser() {
+        long n = sequence.incrementAndGet();
+        return new User("benchmark" + n, "$2a$10$abcdefghijklmnopqrstuuJ4zWJc0Rvhs6a0kqXv1pD8Y0b2h9H4a", "Name", "Surname",
+                "benchmark" + n + "@user.com", true, 30, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,72 @@
+package dekra.user.benchmark;
+
+import dekra.user.model.entities.User;
+import dekra.user.model.entities.UserValidationError;
+import dekra.user.services.impl.UserValidationServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User validation: a validator factory built per call, as it used to be done, against the
+ * shared validator and the fast path of {@link UserValidationServiceImpl}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserValidationBenchmark {
+
+    private Validator sharedValidator;
+
+    private UserValidationServiceImpl validationService;
+
+    private User validUser;
+
+    private User invalidUser;
+
+    @Setup
+    public void setUp() {
+        sharedValidator = Validation.buildDefaultValidatorFactory().getValidator();
+        validationService = new UserValidationServiceImpl(sharedValidator);
+        validUser = new User("benchmark", "password", "Name", "Surname", "benchmark@user.com", true, 30, LocalDateTime.now());
+        invalidUser = new User("benchmark", "pwd", "Name", "Surname", "not an email", true, 10, LocalDateTime.now());
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<User>> factoryPerCall() {
+        return Validation.buildDefaultValidatorFactory().getValidator().validate(validUser);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<User>> sharedValidator() {
+        return sharedValidator.validate(validUser);
+    }
+
+    @Benchmark
+    public List<UserValidationError> fastPathValidUser() {
+        return validationService.validateUser(validUser);
+    }
+
+    @Benchmark
+    public List<UserValidationError> fastPathInvalidUser() {
+        return validationService.validateUser(invalidUser);
+    }
+}
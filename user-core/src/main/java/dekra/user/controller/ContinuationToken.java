@@ -0,0 +1,65 @@
+package dekra.user.controller;
+
+import dekra.user.model.entities.UserCursor;
+import dekra.user.model.entities.UserSort;
+import dekra.user.model.entities.UserSummary;
+
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token of the keyset paginated user list. It carries the sort of the
+ * list and the position of the last user returned in it, its value of the sort field and its
+ * id. Clients must send it back untouched, with the same sort, to get the next page.
+ */
+public final class ContinuationToken {
+
+    private ContinuationToken() {
+    }
+
+    /**
+     * Build the token that resumes a sorted listing after a determined user
+     * @param sort, the sort of the listing
+     * @param last, the last user of the page
+     * @return the token
+     */
+    public static String encode(UserSort sort, UserSummary last) {
+        Object value = sort.getField() == UserSort.Field.ID ? null : sort.valueOf(last);
+        return toBase64(sort + ":" + last.getId() + (value == null ? "" : ":" + value));
+    }
+
+    /**
+     * Get the position a sorted listing has to resume after
+     * @param token, the token received from the client
+     * @param sort, the sort of the listing requested
+     * @return the position of the last user already returned
+     * @throws IllegalArgumentException if the token was not built by {@link #encode(UserSort, UserSummary)}
+     * with the same sort
+     */
+    public static UserCursor decode(String token, UserSort sort) {
+        String value = fromBase64(token);
+        String prefix = sort + ":";
+        if (!value.startsWith(prefix)) {
+            throw new IllegalArgumentException("Invalid continuation token");
+        }
+        String position = value.substring(prefix.length());
+        int separator = position.indexOf(':');
+        try {
+            // no value when the last user did not have the sort field, or the listing is ordered by id
+            return separator < 0
+                    ? new UserCursor(null, Long.valueOf(position))
+                    : new UserCursor(sort.parseValue(position.substring(separator + 1)), Long.valueOf(position.substring(0, separator)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid continuation token", e);
+        }
+    }
+
+    private static String toBase64(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String fromBase64(String token) {
+        return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,55 @@
+package dekra.user.controller;
+
+/**
+ * Strong ETag of an user, its quoted version. The version changes on every write of the user
+ * but the password upgrades, so a matching ETag means the user has not changed.
+ */
+public final class UserETag {
+
+    private UserETag() {
+    }
+
+    /**
+     * Strong ETag of a version of an user
+     * @param version, the version
+     * @return the ETag, quoted
+     */
+    public static String of(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Version of an user from its ETag
+     * @param etag, the ETag
+     * @return the version, null if it is not the strong ETag of a version
+     */
+    public static Long version(String etag) {
+        if (etag.length() < 3 || etag.charAt(0) != '"' || etag.charAt(etag.length() - 1) != '"') {
+            return null;
+        }
+        try {
+            return Long.valueOf(etag.substring(1, etag.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether an If-None-Match header matches an ETag, weak ETags included
+     * @param ifNoneMatch, the header, a list of ETags or *
+     * @param etag, the current ETag
+     * @return whether it matches
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || etag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,8 @@
+package dekra.user.exception;
+
+public class UserAlreadyExistsException extends RuntimeException {
+
+    public UserAlreadyExistsException(String userName) {
+        super(String.format("Username %s already exists", userName));
+    }
+}
@@ -0,0 +1,34 @@
+package dekra.user.model.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(value = "Login Response", description = "User logged in and its authorization")
+public class LoginResponse {
+
+    private Long id;
+
+    private String userName;
+
+    private LocalDateTime lastLogging;
+
+    @ApiModelProperty(value = "Authorization header value for the following requests")
+    private String token;
+
+    /**
+     * Response of a successful login
+     * @param user, the user logged in, with its token set
+     * @return the response
+     */
+    public static LoginResponse of(User user) {
+        return new LoginResponse(user.getId(), user.getUsername(), user.getLastLogging(), user.getToken());
+    }
+}
@@ -6,15 +6,27 @@ import io.swagger.annotations.ApiModelProperty;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.OptimisticLock;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.Transient;
+import javax.persistence.Version;
 import javax.validation.constraints.Email;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
@@ -27,10 +39,25 @@ import java.util.Collection;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "USER")
+// updates through the entity only write the columns that changed
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
+@Table(name = "USER", indexes = {
+        @Index(name = User.USER_NAME_INDEX, columnList = "userName", unique = true),
+        // filters and sorts of the user list, the id completes the keyset order
+        @Index(name = "IX_USER_ACTIVE", columnList = "active, id"),
+        @Index(name = "IX_USER_AGE", columnList = "age, id"),
+        @Index(name = "IX_USER_NAME", columnList = "name, id"),
+        @Index(name = "IX_USER_SURNAME", columnList = "surname, id"),
+        @Index(name = "IX_USER_CREATION_DATE", columnList = "creationDate, id"),
+        @Index(name = "IX_USER_LAST_LOGGING", columnList = "lastLogging, id")})
 @ApiModel(value = "User Model", description = "User Model for user controller request response")
 public class User implements UserDetails{
 
+    public static final String USER_NAME_INDEX = "UK_USER_USER_NAME";
+
     public User(String username, String password, String name, String surname, String email, Boolean active,
                 Integer age, LocalDateTime creationDate) {
         this.userName = username;
@@ -44,10 +71,12 @@ public class User implements UserDetails{
     }
     @Id
     @EqualsAndHashCode.Include
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "USER_SEQ", allocationSize = 50)
     private Long id;
 
     @NotNull
+    @NaturalId
     @ApiModelProperty(value="UserName", required = true, position=1)
     private String userName;
 
@@ -61,6 +90,9 @@ public class User implements UserDetails{
 
     @Size(min = 4,  message = "Minimum length: 4 characters")
     @NotNull
+    @ToString.Exclude
+    // not part of what the responses show, changing it keeps the version
+    @OptimisticLock(excluded = true)
     @ApiModelProperty(value="User password", required = true, position=2)
     private String password;
 
@@ -75,7 +107,16 @@ public class User implements UserDetails{
 
     private LocalDateTime creationDate;
 
+    /**
+     * Incremented on every change of the user, the ETag of its responses
+     */
+    @Version
+    @Column(nullable = false)
+    @JsonIgnore
+    private Long version;
+
     @Transient
+    @ToString.Exclude
     private String token;
 
     @Override
@@ -0,0 +1,17 @@
+package dekra.user.model.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Position of the last user of a page in the order of the list: its value of the sort field
+ * and its id
+ */
+@Data
+@AllArgsConstructor
+public class UserCursor {
+
+    private Object value;
+
+    private Long id;
+}
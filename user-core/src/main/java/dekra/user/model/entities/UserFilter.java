@@ -0,0 +1,48 @@
+package dekra.user.model.entities;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filters of the user list, bound from the query parameters. Every filter is optional and
+ * they are combined with and. Date windows include their start and exclude their end.
+ */
+@Data
+@NoArgsConstructor
+public class UserFilter {
+
+    @ApiModelProperty(value = "Only active or only inactive users")
+    private Boolean active;
+
+    @ApiModelProperty(value = "Minimum age, included")
+    private Integer minAge;
+
+    @ApiModelProperty(value = "Maximum age, included")
+    private Integer maxAge;
+
+    @ApiModelProperty(value = "Created at or after, ISO date time")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdFrom;
+
+    @ApiModelProperty(value = "Created before, ISO date time")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdTo;
+
+    @ApiModelProperty(value = "Last logged in at or after, ISO date time")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime lastLoggingFrom;
+
+    @ApiModelProperty(value = "Last logged in before, ISO date time")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime lastLoggingTo;
+
+    @ApiModelProperty(value = "Name prefix, case sensitive")
+    private String name;
+
+    @ApiModelProperty(value = "Surname prefix, case sensitive")
+    private String surname;
+}
@@ -0,0 +1,25 @@
+package dekra.user.model.entities;
+
+import io.swagger.annotations.ApiModel;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@ApiModel(value = "User Import Request", description = "One user of a batch import")
+public class UserImportRequest {
+
+    private String username;
+
+    private String password;
+
+    private String name;
+
+    private String surname;
+
+    private String email;
+
+    private boolean active;
+
+    private Integer age;
+}
@@ -0,0 +1,27 @@
+package dekra.user.model.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportResult {
+
+    public enum Status { CREATED, FAILED }
+
+    private long row;
+
+    private String username;
+
+    private Status status;
+
+    private Long id;
+
+    private List<String> errors;
+}
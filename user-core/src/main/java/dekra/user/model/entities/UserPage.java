@@ -0,0 +1,21 @@
+package dekra.user.model.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(value = "User Page", description = "A page of users and the token to request the next one")
+public class UserPage {
+
+    private List<UserSummary> users;
+
+    @ApiModelProperty(value = "Continuation token for the next page, null when there are no more users")
+    private String next;
+}
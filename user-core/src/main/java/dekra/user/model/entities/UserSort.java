@@ -0,0 +1,89 @@
+package dekra.user.model.entities;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Order of the user list, a field and a direction. The id always breaks ties, in the same
+ * direction, so the order is total and pages can resume after the last user returned.
+ */
+@Getter
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class UserSort {
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum Field {
+        ID("id", Long::valueOf, UserSummary::getId),
+        NAME("name", value -> value, UserSummary::getName),
+        SURNAME("surname", value -> value, UserSummary::getSurname),
+        AGE("age", Integer::valueOf, UserSummary::getAge),
+        CREATION_DATE("creationDate", LocalDateTime::parse, UserSummary::getCreationDate),
+        LAST_LOGGING("lastLogging", LocalDateTime::parse, UserSummary::getLastLogging);
+
+        /**
+         * Name of the field in the requests and of the entity attribute
+         */
+        private final String attribute;
+
+        private final Function<String, Object> parser;
+
+        private final Function<UserSummary, Object> getter;
+    }
+
+    public static final UserSort DEFAULT = new UserSort(Field.ID, true);
+
+    private static final String DESCENDING = ",desc";
+
+    private final Field field;
+
+    private final boolean ascending;
+
+    /**
+     * Parse the sort parameter of a request, a field optionally followed by ,asc or ,desc
+     * @param sort, the parameter, like surname,desc
+     * @return the sort
+     * @throws IllegalArgumentException if the field is unknown or the direction is not asc or desc
+     */
+    public static UserSort parse(String sort) {
+        String[] parts = sort.split(",", -1);
+        if (parts.length > 2 || (parts.length == 2 && !parts[1].equalsIgnoreCase("asc") && !parts[1].equalsIgnoreCase("desc"))) {
+            throw new IllegalArgumentException("Invalid sort: " + sort);
+        }
+        Field field = Arrays.stream(Field.values()).filter(value -> value.attribute.equals(parts[0])).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Invalid sort field: " + parts[0]));
+        return new UserSort(field, parts.length == 1 || parts[1].equalsIgnoreCase("asc"));
+    }
+
+    /**
+     * Value of the sort field of an user
+     * @param user, the user
+     * @return the value, null if the user does not have it
+     */
+    public Object valueOf(UserSummary user) {
+        return field.getter.apply(user);
+    }
+
+    /**
+     * Value of the sort field written by {@link #toString()} of the value
+     * @param value, the text of the value
+     * @return the value
+     */
+    public Object parseValue(String value) {
+        return field.parser.apply(value);
+    }
+
+    /**
+     * @return the sort as the parameter of a request
+     */
+    @Override
+    public String toString() {
+        return ascending ? field.attribute : field.attribute + DESCENDING;
+    }
+}
@@ -0,0 +1,55 @@
+package dekra.user.model.entities;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.swagger.annotations.ApiModel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read model of an user, what the responses show of it. Lists read it straight from the
+ * database with a constructor expression, so the password column is never fetched and no
+ * entity is managed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(value = "User Summary", description = "User as returned by the user controller")
+public class UserSummary {
+
+    private Long id;
+
+    private String userName;
+
+    private String name;
+
+    private String surname;
+
+    private String email;
+
+    private Integer age;
+
+    private boolean active;
+
+    private LocalDateTime lastLogging;
+
+    private LocalDateTime creationDate;
+
+    /**
+     * Version of the user, sent as the ETag header rather than in the body
+     */
+    @JsonIgnore
+    private Long version;
+
+    /**
+     * Summary of an user already loaded
+     * @param user, the user
+     * @return its summary
+     */
+    public static UserSummary of(User user) {
+        return new UserSummary(user.getId(), user.getUsername(), user.getName(), user.getSurname(), user.getEmail(),
+                user.getAge(), user.isActive(), user.getLastLogging(), user.getCreationDate(), user.getVersion());
+    }
+}
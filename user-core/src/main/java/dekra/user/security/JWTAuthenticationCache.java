@@ -0,0 +1,175 @@
+package dekra.user.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the authentications built from already verified JWT tokens. Entries are
+ * keyed by the SHA-256 digest of the token, so raw tokens are never kept in memory, and live
+ * until the token expires.
+ */
+@Component
+public class JWTAuthenticationCache implements MeterBinder {
+
+    private final Map<ByteBuffer, CachedAuthentication> entries = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(JWTAuthenticationCache::sha256);
+
+    private final int maxSize;
+
+    public JWTAuthenticationCache(@Value("${security.jwt.cache.max-size}") int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the cache key of a token
+     * @param token, the jwt token without the bearer prefix
+     * @return the digest of the token
+     */
+    public ByteBuffer keyOf(String token) {
+        return ByteBuffer.wrap(digests.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Get the authentication of a token verified before
+     * @param key, the key of the token
+     * @return the authentication, or null if the token is not cached or has expired
+     */
+    public Authentication get(ByteBuffer key) {
+        CachedAuthentication cached = entries.get(key);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        if (cached.expiresAt <= System.currentTimeMillis()) {
+            if (entries.remove(key, cached)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached.authentication;
+    }
+
+    /**
+     * Store the authentication of a verified token
+     * @param key, the key of the token
+     * @param authentication, the authentication built from the token claims
+     * @param expiration, the expiration of the token. Tokens without expiration are not cached
+     */
+    public void put(ByteBuffer key, Authentication authentication, Date expiration) {
+        if (expiration == null || maxSize <= 0) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(key, new CachedAuthentication(authentication, expiration.getTime()));
+    }
+
+    /**
+     * Remove every entry
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("security.jwt.cache.hits", this, JWTAuthenticationCache::getHits)
+                .description("Requests authenticated from the cache").register(registry);
+        FunctionCounter.builder("security.jwt.cache.misses", this, JWTAuthenticationCache::getMisses)
+                .description("Requests whose token had to be parsed and verified").register(registry);
+        FunctionCounter.builder("security.jwt.cache.evictions", this, JWTAuthenticationCache::getEvictions)
+                .description("Entries removed because they expired or the cache was full").register(registry);
+        Gauge.builder("security.jwt.cache.size", this, JWTAuthenticationCache::size)
+                .description("Cached authentications").register(registry);
+    }
+
+    /**
+     * Make room for new entries: drop the expired ones first and, if the cache is still full,
+     * arbitrary ones until it is back to 90% of its size. Only one thread sweeps at a time.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            Iterator<CachedAuthentication> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().expiresAt <= now) {
+                    iterator.remove();
+                    evictions.increment();
+                }
+            }
+            int target = maxSize - maxSize / 10 - 1;
+            iterator = entries.values().iterator();
+            while (entries.size() > target && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.increment();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class CachedAuthentication {
+
+        private final Authentication authentication;
+
+        private final long expiresAt;
+    }
+}
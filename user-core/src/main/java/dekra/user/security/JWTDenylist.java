@@ -0,0 +1,201 @@
+package dekra.user.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Ids of the JWT tokens revoked before their expiration. The ids are kept in memory, ordered by
+ * expiration so that they are dropped as soon as their token would be rejected anyway, behind a
+ * bloom filter: checking a token that has not been revoked, the usual case, costs a few bit
+ * probes. The revocations are written to a file periodically and read back on startup.
+ */
+@Log4j2
+@Component
+public class JWTDenylist implements MeterBinder {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * Expiration of the revoked tokens, in epoch milliseconds, by id
+     */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private final NavigableSet<Map.Entry<String, Long>> byExpiration = new ConcurrentSkipListSet<>(
+            Map.Entry.<String, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private final LongAdder falsePositives = new LongAdder();
+
+    private final int expectedSize;
+
+    private final Path file;
+
+    /**
+     * Source of the current time, in epoch milliseconds
+     */
+    private final LongSupplier clock;
+
+    private volatile BloomFilter bloomFilter;
+
+    /**
+     * Create the denylist
+     * @param expectedSize, the number of revoked tokens the bloom filter is sized for
+     * @param file, where the revocations are kept between restarts, empty to keep them in memory only
+     */
+    @Autowired
+    public JWTDenylist(@Value("${security.jwt.revocations.expected-size}") int expectedSize,
+                       @Value("${security.jwt.revocations.file:}") String file) {
+        this(expectedSize, file, System::currentTimeMillis);
+    }
+
+    /**
+     * Create the denylist on a given clock
+     * @param expectedSize, the number of revoked tokens the bloom filter is sized for
+     * @param file, where the revocations are kept between restarts, empty to keep them in memory only
+     * @param clock, the current time in epoch milliseconds, as {@link System#currentTimeMillis()}
+     */
+    JWTDenylist(int expectedSize, String file, LongSupplier clock) {
+        this.expectedSize = expectedSize;
+        this.file = file.isEmpty() ? null : Paths.get(file);
+        this.clock = clock;
+        this.bloomFilter = new BloomFilter(expectedSize, FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Revoke a token
+     * @param tokenId, the id of the token
+     * @param expiration, when the token expires, in epoch milliseconds
+     */
+    public synchronized void revoke(String tokenId, long expiration) {
+        if (expiration <= clock.getAsLong() || revoked.putIfAbsent(tokenId, expiration) != null) {
+            return;
+        }
+        byExpiration.add(Map.entry(tokenId, expiration));
+        bloomFilter.add(tokenId);
+        dirty.set(true);
+    }
+
+    /**
+     * Check whether a token has been revoked
+     * @param tokenId, the id of the token
+     * @return whether it has been revoked
+     */
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null || !bloomFilter.mightContain(tokenId)) {
+            return false;
+        }
+        if (revoked.containsKey(tokenId)) {
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    /**
+     * Drop the revocations of the tokens expired and write the revocations to file if they changed
+     */
+    @Scheduled(fixedDelayString = "${security.jwt.revocations.flush-interval}")
+    public void flush() {
+        purgeExpired();
+        if (file != null && dirty.getAndSet(false)) {
+            try {
+                write();
+            } catch (IOException e) {
+                dirty.set(true);
+                log.error("Revoked tokens could not be written to " + file, e);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (String line : lines) {
+            int separator = line.indexOf(' ');
+            if (separator > 0) {
+                revoke(line.substring(0, separator), Long.parseLong(line.substring(separator + 1)));
+            }
+        }
+        dirty.set(false);
+        log.info("{} revoked tokens loaded from {}", revoked.size(), file);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("security.jwt.revoked", this, JWTDenylist::size)
+                .description("Revoked tokens not expired yet")
+                .register(registry);
+        FunctionCounter.builder("security.jwt.revoked.false-positives", falsePositives, LongAdder::sum)
+                .description("Tokens not revoked that went past the bloom filter")
+                .register(registry);
+    }
+
+    /**
+     * Drop the revocations of the tokens expired, and rebuild the bloom filter without them
+     */
+    private synchronized void purgeExpired() {
+        long now = clock.getAsLong();
+        boolean purged = false;
+        while (!byExpiration.isEmpty() && byExpiration.first().getValue() <= now) {
+            revoked.remove(byExpiration.pollFirst().getKey());
+            purged = true;
+        }
+        if (purged) {
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedSize, 2 * revoked.size()), FALSE_POSITIVE_RATE);
+            revoked.keySet().forEach(rebuilt::add);
+            bloomFilter = rebuilt;
+            dirty.set(true);
+        }
+    }
+
+    private void write() throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> revocation : byExpiration) {
+                writer.write(revocation.getKey());
+                writer.write(' ');
+                writer.write(Long.toString(revocation.getValue()));
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,35 @@
+package dekra.user.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.MissingClaimException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Details of the authentication of a request: the id and the expiration, in epoch milliseconds,
+ * of its token
+ */
+@Data
+@AllArgsConstructor
+public class JWTTokenDetails {
+
+    private String id;
+
+    private long expiration;
+
+    /**
+     * Get the details of a verified token
+     * @param claims, the claims of the token
+     * @return the details
+     * @throws MissingClaimException if the token has no id, so it can't be revoked, or no expiration
+     */
+    public static JWTTokenDetails of(Claims claims) {
+        if (claims.getId() == null) {
+            throw new MissingClaimException(null, claims, "The token has no id, it can't be revoked");
+        }
+        if (claims.getExpiration() == null) {
+            throw new MissingClaimException(null, claims, "The token has no expiration");
+        }
+        return new JWTTokenDetails(claims.getId(), claims.getExpiration().getTime());
+    }
+}
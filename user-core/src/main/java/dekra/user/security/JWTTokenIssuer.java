@@ -0,0 +1,133 @@
+package dekra.user.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Issues the JWT tokens of the users that log in: HS512 signed, a random id, the username as
+ * subject and the ROLE_USER authority. The tokens are the ones the jjwt builder produces, but everything that
+ * does not depend on the user or the time is worked out once: the signing key, the encoded
+ * header and the fixed claims. Issuing a token is then a few appends, one base64 encoding and
+ * one HMAC on a per thread {@link Mac}.
+ */
+@Component
+public class JWTTokenIssuer {
+
+    public static final String PREFIX = "Bearer ";
+
+    private static final String ALGORITHM = "HmacSHA512";
+
+    private static final String HEADER = "{\"alg\":\"HS512\"}";
+
+    private static final String CLAIMS_START = "{\"jti\":\"";
+
+    private static final String AUTHORITIES = "[\"ROLE_USER\"]";
+
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+
+    private final SecretKeySpec key;
+
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    /**
+     * The bearer prefix and the encoded header, followed by the dot that starts the claims
+     */
+    private final byte[] prefixAndHeader;
+
+    private final String claimsMiddle;
+
+    private final String claimsEnd;
+
+    private final long ttlSeconds;
+
+    public JWTTokenIssuer(@Value("${security.jwt.secret}") String secret, @Value("${security.jwt.ttl}") Duration ttl,
+                          @Value("${security.jwt.issuer:}") String issuer) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.ttlSeconds = ttl.getSeconds();
+        this.prefixAndHeader = (PREFIX + BASE64.encodeToString(HEADER.getBytes(StandardCharsets.UTF_8)) + ".")
+                .getBytes(StandardCharsets.US_ASCII);
+        StringBuilder middle = new StringBuilder("\"");
+        if (!issuer.isEmpty()) {
+            appendJsonString(middle.append(",\"iss\":"), issuer);
+        }
+        this.claimsMiddle = middle.append(",\"sub\":").toString();
+        this.claimsEnd = ",\"authorities\":" + AUTHORITIES + ",\"iat\":";
+        // an unusable key fails the startup rather than the first login
+        newMac();
+    }
+
+    /**
+     * Get the jwt token of a determined user
+     * @param username, the username to assign the token
+     * @return the jwt token, with the bearer prefix
+     */
+    public String issue(String username) {
+        long now = System.currentTimeMillis() / 1000;
+        StringBuilder claims = new StringBuilder(CLAIMS_START.length() + claimsMiddle.length() + claimsEnd.length()
+                + username.length() + 64)
+                .append(CLAIMS_START).append(newTokenId()).append(claimsMiddle);
+        appendJsonString(claims, username);
+        claims.append(claimsEnd).append(now).append(",\"exp\":").append(now + ttlSeconds).append('}');
+        byte[] payload = BASE64.encode(claims.toString().getBytes(StandardCharsets.UTF_8));
+
+        Mac mac = macs.get();
+        mac.update(prefixAndHeader, PREFIX.length(), prefixAndHeader.length - PREFIX.length());
+        mac.update(payload);
+        byte[] signature = BASE64.encode(mac.doFinal());
+
+        byte[] token = new byte[prefixAndHeader.length + payload.length + 1 + signature.length];
+        System.arraycopy(prefixAndHeader, 0, token, 0, prefixAndHeader.length);
+        System.arraycopy(payload, 0, token, prefixAndHeader.length, payload.length);
+        token[prefixAndHeader.length + payload.length] = '.';
+        System.arraycopy(signature, 0, token, token.length - signature.length, signature.length);
+        return new String(token, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * A new token id, 128 random bits in base64url, so that tokens can be revoked one by one
+     * @return the id
+     */
+    private static String newTokenId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return BASE64.encodeToString(ByteBuffer.allocate(16).putLong(random.nextLong()).putLong(random.nextLong()).array());
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HS512 signing not available", e);
+        }
+    }
+
+    /**
+     * Append a string as a json string literal
+     * @param json, the json being written
+     * @param value, the string
+     */
+    private static void appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
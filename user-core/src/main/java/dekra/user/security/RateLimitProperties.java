@@ -0,0 +1,62 @@
+package dekra.user.security;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Limits of the rate limiting filter, from the security.rate-limit properties
+ */
+@Data
+@Component
+@ConfigurationProperties("security.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Most clients or usernames tracked by each limit
+     */
+    private int maxKeys = 100000;
+
+    /**
+     * Limited endpoints, by name
+     */
+    private Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    @Data
+    public static class Endpoint {
+
+        private HttpMethod method = HttpMethod.POST;
+
+        private String path;
+
+        /**
+         * Limit of each client ip, none if not set
+         */
+        private Limit ip;
+
+        /**
+         * Limit of each value of the username parameter, none if not set
+         */
+        private Limit username;
+    }
+
+    @Data
+    public static class Limit {
+
+        /**
+         * Requests allowed in a burst
+         */
+        private int capacity;
+
+        /**
+         * Requests allowed per second once the burst is spent
+         */
+        private double refillPerSecond;
+    }
+}
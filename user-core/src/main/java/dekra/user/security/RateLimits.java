@@ -0,0 +1,124 @@
+package dekra.user.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Limits of the endpoints configured in {@link RateLimitProperties}, with a token bucket per
+ * client ip and one per username, for the rate limiting filters of both stacks. Paths are
+ * compared without empty segments, as the access rules do, see {@link #normalize(String)}.
+ * Requests over a limit are counted in security.rate-limit.rejected.
+ */
+public class RateLimits {
+
+    private static final String USERNAME = "username";
+
+    /**
+     * Limits of each endpoint, by method and path
+     */
+    private final Map<String, List<KeyedLimit>> limits = new HashMap<>();
+
+    public RateLimits(RateLimitProperties properties, MeterRegistry registry) {
+        properties.getEndpoints().forEach((name, endpoint) -> {
+            List<KeyedLimit> endpointLimits = new ArrayList<>(2);
+            if (endpoint.getIp() != null) {
+                endpointLimits.add(new KeyedLimit(name, "ip", endpoint.getIp(), properties, registry));
+            }
+            if (endpoint.getUsername() != null) {
+                endpointLimits.add(new KeyedLimit(name, USERNAME, endpoint.getUsername(), properties, registry));
+            }
+            limits.put(endpoint.getMethod().name() + " " + normalize(endpoint.getPath()), endpointLimits);
+        });
+    }
+
+    /**
+     * Take a token from every limit of the endpoint of a request, the keys are only read for
+     * the limited endpoints
+     * @param method, the method of the request
+     * @param path, the path of the request
+     * @param ip, the address of the client
+     * @param parameters, the value of each parameter of the request, by name
+     * @return 0 if the request is allowed, otherwise the nanoseconds until it would be
+     */
+    public long tryAcquire(String method, String path, Supplier<String> ip, Function<String, String> parameters) {
+        // the same path as the controllers and the access rules see, /auth/login/ is /auth/login
+        List<KeyedLimit> endpointLimits = limits.get(method + " " + normalize(path));
+        if (endpointLimits == null) {
+            return 0;
+        }
+        for (KeyedLimit limit : endpointLimits) {
+            String key = limit.byUsername ? parameters.apply(USERNAME) : ip.get();
+            long wait = key == null ? 0 : limit.buckets.tryAcquire(key);
+            if (wait > 0) {
+                limit.rejected.increment();
+                return wait;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Retry-After of a request over its limit
+     * @param waitNanos, nanoseconds until the request would be allowed
+     * @return the whole seconds to wait, rounded up
+     */
+    public static String retryAfter(long waitNanos) {
+        return String.valueOf(TimeUnit.NANOSECONDS.toSeconds(waitNanos - 1) + 1);
+    }
+
+    /**
+     * A path the way the access rules see it: empty segments are ignored, so doubled and trailing
+     * slashes do not make another path
+     * @param path, the path
+     * @return the path without empty segments, "/" for the root
+     */
+    public static String normalize(String path) {
+        if (path.startsWith("/") && !path.contains("//") && (path.length() == 1 || !path.endsWith("/"))) {
+            return path;
+        }
+        StringBuilder normalized = new StringBuilder(path.length());
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                normalized.append('/').append(segment);
+            }
+        }
+        return normalized.length() == 0 ? "/" : normalized.toString();
+    }
+
+    /**
+     * A limit of an endpoint and how its requests are keyed
+     */
+    private static final class KeyedLimit {
+
+        private final boolean byUsername;
+
+        private final TokenBuckets buckets;
+
+        private final Counter rejected;
+
+        private KeyedLimit(String endpoint, String keyName, RateLimitProperties.Limit limit, RateLimitProperties properties,
+                           MeterRegistry registry) {
+            this.byUsername = USERNAME.equals(keyName);
+            this.buckets = new TokenBuckets(limit.getCapacity(), limit.getRefillPerSecond(), properties.getMaxKeys());
+            this.rejected = Counter.builder("security.rate-limit.rejected")
+                    .description("Requests rejected for going over a rate limit")
+                    .tag("endpoint", endpoint)
+                    .tag("key", keyName)
+                    .register(registry);
+            FunctionCounter.builder("security.rate-limit.untracked", buckets, TokenBuckets::getUntracked)
+                    .description("Requests not limited because the limit was tracking too many keys already")
+                    .tag("endpoint", endpoint)
+                    .tag("key", keyName)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package dekra.user.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * One token bucket per key, all with the same capacity and refill rate. Each bucket is a single
+ * long, the time at which it will be full again (the generic cell rate algorithm), updated with
+ * compare and set: taking a token never locks and never allocates once the bucket exists.
+ *
+ * The buckets are spread over stripes, each bounded to its share of the maximum number of keys.
+ * A full bucket is the same as no bucket, so when a stripe is full the buckets that have refilled
+ * are dropped without losing anything. Keys that still do not fit are not limited, and the stripe
+ * is not scanned again until the first of its buckets refills.
+ */
+public class TokenBuckets {
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes;
+
+    private final int stripeCapacity;
+
+    /**
+     * Nanoseconds to refill a token
+     */
+    private final long refillNanos;
+
+    /**
+     * How far ahead of now the full time of a bucket can be while it still has a token
+     */
+    private final long burstNanos;
+
+    private final LongAdder untracked = new LongAdder();
+
+    /**
+     * Source of the current time, in nanoseconds
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Create the buckets
+     * @param capacity, tokens of a full bucket
+     * @param refillPerSecond, tokens added per second
+     * @param maxKeys, the most keys tracked
+     */
+    public TokenBuckets(int capacity, double refillPerSecond, int maxKeys) {
+        this(capacity, refillPerSecond, maxKeys, System::nanoTime);
+    }
+
+    /**
+     * Create the buckets on a given clock
+     * @param capacity, tokens of a full bucket
+     * @param refillPerSecond, tokens added per second
+     * @param maxKeys, the most keys tracked
+     * @param clock, the current time in nanoseconds, as {@link System#nanoTime()}
+     */
+    TokenBuckets(int capacity, double refillPerSecond, int maxKeys, LongSupplier clock) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("A bucket needs a capacity and a refill rate above 0");
+        }
+        this.refillNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond));
+        this.burstNanos = (capacity - 1) * refillNanos;
+        this.stripeCapacity = Math.max(1, maxKeys / STRIPES);
+        this.clock = clock;
+        this.stripes = new Stripe[STRIPES];
+        long now = clock.getAsLong();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(now);
+        }
+    }
+
+    /**
+     * Take a token from the bucket of a key
+     * @param key, the key
+     * @return 0 if there was a token, otherwise the nanoseconds until there is one
+     */
+    public long tryAcquire(String key) {
+        long now = clock.getAsLong();
+        AtomicLong bucket = bucket(key, now);
+        if (bucket == null) {
+            untracked.increment();
+            return 0;
+        }
+        while (true) {
+            long fullAt = bucket.get();
+            long from = fullAt - now > 0 ? fullAt : now;
+            long wait = from - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, from + refillNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Requests let through because their key did not fit
+     */
+    public long getUntracked() {
+        return untracked.sum();
+    }
+
+    private AtomicLong bucket(String key, long now) {
+        Stripe stripe = stripes[spread(key.hashCode()) & (STRIPES - 1)];
+        AtomicLong bucket = stripe.buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (stripe.buckets.size() >= stripeCapacity && !stripe.purge(now, stripeCapacity)) {
+            return null;
+        }
+        return stripe.buckets.computeIfAbsent(key, newKey -> new AtomicLong(now));
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Stripe {
+
+        private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+        /**
+         * When the first of the buckets left by the last purge refills
+         */
+        private volatile long nextRefill;
+
+        private Stripe(long now) {
+            this.nextRefill = now;
+        }
+
+        /**
+         * Drop the buckets that have refilled
+         * @param now, the current time
+         * @param capacity, the most buckets of the stripe
+         * @return whether there is room for a new bucket now
+         */
+        private boolean purge(long now, int capacity) {
+            if (nextRefill - now > 0) {
+                return false;
+            }
+            long earliest = now;
+            boolean left = false;
+            for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+                long fullAt = entry.getValue().get();
+                if (fullAt - now <= 0) {
+                    buckets.remove(entry.getKey(), entry.getValue());
+                } else if (!left || fullAt - earliest < 0) {
+                    earliest = fullAt;
+                    left = true;
+                }
+            }
+            nextRefill = earliest;
+            return buckets.size() < capacity;
+        }
+    }
+}
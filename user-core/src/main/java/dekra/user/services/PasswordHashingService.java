@@ -0,0 +1,16 @@
+package dekra.user.services;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface PasswordHashingService {
+
+    CompletableFuture<String> encode(String rawPassword);
+
+    List<String> encodeAll(List<String> rawPasswords);
+
+    CompletableFuture<Boolean> matches(String rawPassword, String encodedPassword);
+
+    boolean needsRehash(String encodedPassword);
+
+}
@@ -11,5 +11,7 @@ public interface UserValidationService {
 
     List<UserValidationError> validateUser(User user);
 
+    List<UserValidationError> validateValue(String property, Object value);
+
 
 }
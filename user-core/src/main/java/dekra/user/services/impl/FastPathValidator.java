@@ -0,0 +1,159 @@
+package dekra.user.services.impl;
+
+import javax.validation.Validator;
+import javax.validation.constraints.Email;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import javax.validation.groups.Default;
+import javax.validation.metadata.BeanDescriptor;
+import javax.validation.metadata.ConstraintDescriptor;
+import javax.validation.metadata.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Checks compiled once from the Bean Validation metadata of a class, to tell quickly that an
+ * object is valid. Only the common constraints are compiled and the email check is stricter
+ * than Bean Validation's, so a negative answer is not an error: the object has to go through
+ * the full validator then, which also builds the messages. If the class uses a constraint
+ * that can not be compiled, the fast path is disabled and every object takes the full path.
+ * @param <T> the validated class
+ */
+public class FastPathValidator<T> {
+
+    private static final String ATOM = "[A-Za-z0-9_%+-]+";
+
+    private static final String LABEL = "[A-Za-z0-9]+(-[A-Za-z0-9]+)*";
+
+    private static final Pattern SIMPLE_EMAIL = Pattern.compile(ATOM + "(\\." + ATOM + ")*@" + LABEL + "(\\." + LABEL + ")*");
+
+    private static final int MAX_EMAIL_LOCAL_PART = 64;
+
+    private static final int MAX_EMAIL_LABEL = 63;
+
+    private final List<Predicate<T>> checks;
+
+    public FastPathValidator(Validator validator, Class<T> type) {
+        this.checks = compile(validator.getConstraintsForClass(type), type);
+    }
+
+    /**
+     * Tell whether an object is certainly valid
+     * @param object, the object to check
+     * @return true if it is valid, false if it has to go through the full validator
+     */
+    public boolean isValid(T object) {
+        if (checks == null) {
+            return false;
+        }
+        for (Predicate<T> check : checks) {
+            if (!check.test(object)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isEnabled() {
+        return checks != null;
+    }
+
+    private static <T> List<Predicate<T>> compile(BeanDescriptor bean, Class<T> type) {
+        if (!bean.getConstraintDescriptors().isEmpty()) {
+            return null;
+        }
+        List<Predicate<T>> checks = new ArrayList<>();
+        for (PropertyDescriptor property : bean.getConstrainedProperties()) {
+            if (property.isCascaded()) {
+                return null;
+            }
+            Field field = findField(type, property.getPropertyName());
+            if (field == null) {
+                return null;
+            }
+            field.setAccessible(true);
+            for (ConstraintDescriptor<?> constraint : property.getConstraintDescriptors()) {
+                Predicate<Object> valueCheck = compile(constraint);
+                if (valueCheck == null) {
+                    return null;
+                }
+                checks.add(object -> valueCheck.test(read(field, object)));
+            }
+        }
+        return checks;
+    }
+
+    private static Predicate<Object> compile(ConstraintDescriptor<?> constraint) {
+        if (!constraint.getComposingConstraints().isEmpty() || constraint.getGroups().size() != 1
+                || !constraint.getGroups().contains(Default.class)) {
+            return null;
+        }
+        Annotation annotation = constraint.getAnnotation();
+        if (annotation instanceof NotNull) {
+            return value -> value != null;
+        }
+        if (annotation instanceof Size) {
+            int min = ((Size) annotation).min();
+            int max = ((Size) annotation).max();
+            return value -> value == null
+                    || value instanceof CharSequence && ((CharSequence) value).length() >= min && ((CharSequence) value).length() <= max;
+        }
+        if (annotation instanceof Min) {
+            long min = ((Min) annotation).value();
+            return value -> value == null || isIntegral(value) && ((Number) value).longValue() >= min;
+        }
+        if (annotation instanceof Max) {
+            long max = ((Max) annotation).value();
+            return value -> value == null || isIntegral(value) && ((Number) value).longValue() <= max;
+        }
+        if (annotation instanceof Email && ".*".equals(((Email) annotation).regexp())) {
+            return value -> value == null || value instanceof CharSequence && isSimpleEmail(value.toString());
+        }
+        return null;
+    }
+
+    private static boolean isSimpleEmail(String email) {
+        if (!SIMPLE_EMAIL.matcher(email).matches()) {
+            return false;
+        }
+        int at = email.indexOf('@');
+        if (at > MAX_EMAIL_LOCAL_PART) {
+            return false;
+        }
+        for (String label : email.substring(at + 1).split("\\.")) {
+            if (label.length() > MAX_EMAIL_LABEL) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+    }
+
+    private static Field findField(Class<?> type, String name) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            try {
+                return current.getDeclaredField(name);
+            } catch (NoSuchFieldException e) {
+                // look in the superclass
+            }
+        }
+        return null;
+    }
+
+    private static Object read(Field field, Object object) {
+        try {
+            return field.get(object);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package dekra.user.services.impl;
+
+import dekra.user.services.PasswordHashingService;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+@Log4j2
+@Service
+public class PasswordHashingServiceImpl implements PasswordHashingService {
+
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final int strength;
+
+    public PasswordHashingServiceImpl(PasswordEncoder passwordEncoder,
+                                      @Qualifier("passwordHashingExecutor") ThreadPoolTaskExecutor executor) {
+        this.passwordEncoder = passwordEncoder;
+        this.executor = executor;
+
+        // one hash up front gives the cost in use and how long a hash takes on this machine
+        long start = System.nanoTime();
+        String sample = passwordEncoder.encode("benchmark");
+        this.strength = strengthOf(sample);
+        log.info("BCrypt hash with strength {} takes {} ms", strength,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Hash a password on the hashing pool
+     * @param rawPassword, the password to hash
+     * @return the hash
+     * @throws TaskRejectedException if the hashing pool is saturated
+     */
+    @Override
+    public CompletableFuture<String> encode(String rawPassword) {
+        return CompletableFuture.supplyAsync(() -> passwordEncoder.encode(rawPassword), executor);
+    }
+
+    /**
+     * Hash several passwords in parallel on the hashing pool. When the pool is saturated the
+     * remaining passwords are hashed on the calling thread, which also slows the caller down
+     * @param rawPasswords, the passwords to hash
+     * @return the hashes, in the same order
+     */
+    @Override
+    public List<String> encodeAll(List<String> rawPasswords) {
+        List<CompletableFuture<String>> hashes = new ArrayList<>(rawPasswords.size());
+        for (String rawPassword : rawPasswords) {
+            try {
+                hashes.add(encode(rawPassword));
+            } catch (TaskRejectedException e) {
+                hashes.add(CompletableFuture.completedFuture(passwordEncoder.encode(rawPassword)));
+            }
+        }
+        return hashes.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    /**
+     * Check a password against its hash on the hashing pool
+     * @param rawPassword, the password to check
+     * @param encodedPassword, the stored hash
+     * @return whether the password matches
+     * @throws TaskRejectedException if the hashing pool is saturated
+     */
+    @Override
+    public CompletableFuture<Boolean> matches(String rawPassword, String encodedPassword) {
+        return CompletableFuture.supplyAsync(() -> passwordEncoder.matches(rawPassword, encodedPassword), executor);
+    }
+
+    /**
+     * Check if a stored password has to be hashed again, because it is not a BCrypt hash or it
+     * was hashed with a strength different from the configured one
+     * @param encodedPassword, the stored password
+     * @return whether it has to be hashed again
+     */
+    @Override
+    public boolean needsRehash(String encodedPassword) {
+        return strengthOf(encodedPassword) != strength;
+    }
+
+    private static int strengthOf(String encodedPassword) {
+        Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+        return matcher.lookingAt() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+}
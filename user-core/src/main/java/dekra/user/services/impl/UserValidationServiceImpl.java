@@ -0,0 +1,78 @@
+package dekra.user.services.impl;
+
+import dekra.user.model.entities.User;
+import dekra.user.model.entities.UserValidationError;
+import dekra.user.services.UserValidationService;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Log4j2
+@Service
+public class UserValidationServiceImpl implements UserValidationService {
+
+    private final Validator validator;
+
+    private final FastPathValidator<User> fastPathValidator;
+
+    public UserValidationServiceImpl(Validator validator) {
+        this.validator = validator;
+        this.fastPathValidator = new FastPathValidator<>(validator, User.class);
+        if (!fastPathValidator.isEnabled()) {
+            log.warn("User has constraints the fast path can not check, every user goes through the full validator");
+        }
+    }
+
+
+    public UserValidationError createValidationError(String error, String description) {
+        UserValidationError result = new UserValidationError();
+        result.setError(error);
+        result.setDescription(description);
+        return result;
+    }
+
+    /**
+     * Validate an user. Valid users are recognised by the precompiled checks, only the users
+     * that may be invalid go through the shared Bean Validation validator
+     * @param user, the user to validate
+     * @return the validation errors, empty if the user is valid
+     */
+    public List<UserValidationError> validateUser(User user) {
+
+        if (fastPathValidator.isValid(user)) {
+            return Collections.emptyList();
+        }
+
+        List<UserValidationError> validationErrors = new ArrayList<>();
+
+        validator.validate(user).stream().forEach(violation ->
+                validationErrors.add(createValidationError(violation.getPropertyPath().toString(), violation.getMessage())));
+
+        return validationErrors;
+
+    }
+
+    /**
+     * Validate the value of a property against the constraints of that property of the user,
+     * for the changes written without loading the user
+     * @param property, the name of the property
+     * @param value, the value to check
+     * @return the validation errors, empty if the value is valid
+     */
+    public List<UserValidationError> validateValue(String property, Object value) {
+
+        List<UserValidationError> validationErrors = new ArrayList<>();
+
+        validator.validateValue(User.class, property, value).forEach(violation ->
+                validationErrors.add(createValidationError(violation.getPropertyPath().toString(), violation.getMessage())));
+
+        return validationErrors;
+
+    }
+
+
+}
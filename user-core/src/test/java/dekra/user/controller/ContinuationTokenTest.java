@@ -0,0 +1,94 @@
+package dekra.user.controller;
+
+import dekra.user.model.entities.UserCursor;
+import dekra.user.model.entities.UserSort;
+import dekra.user.model.entities.UserSummary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ContinuationTokenTest {
+
+    private static final UserSummary LAST = new UserSummary(42L, "user", "name", "surname", "user@user.com", 30, true,
+            LocalDateTime.of(2021, 9, 2, 8, 30), LocalDateTime.of(2021, 9, 1, 10, 0, 15), 3L);
+
+    private static final UserSummary WITHOUT_VALUES = new UserSummary(43L, "other", null, null, null, null, true,
+            null, null, 0L);
+
+    @ParameterizedTest
+    @ValueSource(strings = {"id", "id,desc", "name", "name,desc", "surname", "age", "age,desc", "creationDate", "lastLogging,desc"})
+    void sortedTokenRoundTrips(String sortParameter) {
+        UserSort sort = UserSort.parse(sortParameter);
+
+        UserCursor cursor = ContinuationToken.decode(ContinuationToken.encode(sort, LAST), sort);
+
+        assertThat(cursor.getId()).isEqualTo(42L);
+        assertThat(cursor.getValue()).isEqualTo(sort.getField() == UserSort.Field.ID ? null : sort.valueOf(LAST));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"name", "age,desc", "creationDate", "lastLogging"})
+    void sortedTokenOfAUserWithoutTheFieldHasNoValue(String sortParameter) {
+        UserSort sort = UserSort.parse(sortParameter);
+
+        UserCursor cursor = ContinuationToken.decode(ContinuationToken.encode(sort, WITHOUT_VALUES), sort);
+
+        assertThat(cursor.getId()).isEqualTo(43L);
+        assertThat(cursor.getValue()).isNull();
+    }
+
+    @Test
+    void valuesWithTheSeparatorRoundTrip() {
+        UserSort sort = UserSort.parse("name");
+        UserSummary last = new UserSummary(7L, "user", "a:b:c", null, null, null, true, null, null, 0L);
+
+        assertThat(ContinuationToken.decode(ContinuationToken.encode(sort, last), sort).getValue()).isEqualTo("a:b:c");
+    }
+
+    @Test
+    void idTokenRoundTrips() {
+        assertThat(ContinuationToken.decode(ContinuationToken.encode(UserSort.DEFAULT, LAST), UserSort.DEFAULT).getId()).isEqualTo(42L);
+    }
+
+    @Test
+    void tokenOfAnotherSortIsRejected() {
+        String token = ContinuationToken.encode(UserSort.parse("age"), LAST);
+
+        assertThatThrownBy(() -> ContinuationToken.decode(token, UserSort.parse("age,desc"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ContinuationToken.decode(token, UserSort.parse("name"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ContinuationToken.decode(token, UserSort.DEFAULT)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void idTokenIsRejectedBySortedLists() {
+        String token = ContinuationToken.encode(UserSort.DEFAULT, LAST);
+
+        assertThatThrownBy(() -> ContinuationToken.decode(token, UserSort.parse("age"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"not base64!", "age:x", "age:1:young", "creationDate:1:yesterday", "id:", "age"})
+    void malformedTokensAreRejected(String token) {
+        String encoded = token.equals("not base64!") ? token : toBase64(token);
+
+        assertThatThrownBy(() -> ContinuationToken.decode(encoded, UserSort.parse(token.startsWith("creationDate") ? "creationDate" : "age")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"id:", "id:x", "age:1"})
+    void malformedIdTokensAreRejected(String token) {
+        assertThatThrownBy(() -> ContinuationToken.decode(toBase64(token), UserSort.DEFAULT)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String toBase64(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
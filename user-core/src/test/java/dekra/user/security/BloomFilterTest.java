@@ -0,0 +1,53 @@
+package dekra.user.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    @Test
+    void addedStringsAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        List<String> added = ids(10000);
+        added.forEach(filter::add);
+
+        assertThat(added).allMatch(filter::mightContain);
+    }
+
+    @Test
+    void overfilledFilterStillFindsEveryString() {
+        BloomFilter filter = new BloomFilter(10, 0.01);
+        List<String> added = ids(5000);
+        added.forEach(filter::add);
+
+        assertThat(added).allMatch(filter::mightContain);
+    }
+
+    @Test
+    void falsePositivesStayAroundTheRateSizedFor() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        ids(10000).forEach(filter::add);
+
+        long falsePositives = ids(100000).stream().filter(filter::mightContain).count();
+
+        // 1% expected, the margin keeps the test deterministic enough
+        assertThat(falsePositives).isLessThan(2000);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(0, 0.01);
+
+        assertThat(ids(1000)).noneMatch(filter::mightContain);
+    }
+
+    private static List<String> ids(int count) {
+        return IntStream.range(0, count).mapToObj(i -> UUID.randomUUID().toString()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,125 @@
+package dekra.user.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Denylist on a clock moved by hand
+ */
+class JWTDenylistTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private final AtomicLong clock = new AtomicLong(1_600_000_000_000L);
+
+    @Test
+    void onlyRevokedTokensAreRevoked() {
+        JWTDenylist denylist = new JWTDenylist(100, "", clock::get);
+
+        denylist.revoke("revoked", clock.get() + MINUTE);
+
+        assertThat(denylist.isRevoked("revoked")).isTrue();
+        assertThat(denylist.isRevoked("other")).isFalse();
+        assertThat(denylist.isRevoked(null)).isFalse();
+        assertThat(denylist.size()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredTokensAreNotKept() {
+        JWTDenylist denylist = new JWTDenylist(100, "", clock::get);
+
+        denylist.revoke("expired", clock.get());
+
+        assertThat(denylist.isRevoked("expired")).isFalse();
+        assertThat(denylist.size()).isZero();
+    }
+
+    @Test
+    void rebuiltFilterHasNoFalseNegatives() {
+        JWTDenylist denylist = new JWTDenylist(1000, "", clock::get);
+        List<String> shortLived = ids("short", 3000);
+        List<String> longLived = ids("long", 3000);
+        shortLived.forEach(id -> denylist.revoke(id, clock.get() + MINUTE));
+        longLived.forEach(id -> denylist.revoke(id, clock.get() + 60 * MINUTE));
+
+        clock.addAndGet(2 * MINUTE);
+        denylist.flush();
+
+        assertThat(denylist.size()).isEqualTo(longLived.size());
+        assertThat(longLived).allMatch(denylist::isRevoked);
+        assertThat(shortLived).noneMatch(denylist::isRevoked);
+    }
+
+    @Test
+    void tokensRevokedAfterARebuildAreRevoked() {
+        JWTDenylist denylist = new JWTDenylist(10, "", clock::get);
+        denylist.revoke("first", clock.get() + MINUTE);
+        clock.addAndGet(2 * MINUTE);
+        denylist.flush();
+
+        List<String> later = ids("later", 500);
+        later.forEach(id -> denylist.revoke(id, clock.get() + MINUTE));
+
+        assertThat(later).allMatch(denylist::isRevoked);
+        assertThat(denylist.isRevoked("first")).isFalse();
+    }
+
+    @Test
+    void revocationsSurviveARestart(@TempDir Path directory) throws IOException {
+        String file = directory.resolve("revoked-tokens").toString();
+        JWTDenylist denylist = new JWTDenylist(100, file, clock::get);
+        denylist.load();
+        denylist.revoke("soon", clock.get() + MINUTE);
+        denylist.revoke("later", clock.get() + 60 * MINUTE);
+        denylist.flushOnShutdown();
+
+        clock.addAndGet(2 * MINUTE);
+        JWTDenylist restarted = new JWTDenylist(100, file, clock::get);
+        restarted.load();
+
+        assertThat(restarted.isRevoked("later")).isTrue();
+        assertThat(restarted.isRevoked("soon")).isFalse();
+        assertThat(restarted.size()).isEqualTo(1);
+        assertThat(Files.list(directory).map(path -> path.getFileName().toString())).containsExactly("revoked-tokens");
+    }
+
+    @Test
+    void fileIsRewrittenWithoutTheExpiredTokens(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("revoked-tokens");
+        JWTDenylist denylist = new JWTDenylist(100, file.toString(), clock::get);
+        denylist.revoke("soon", clock.get() + MINUTE);
+        denylist.revoke("later", clock.get() + 60 * MINUTE);
+        denylist.flush();
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8)).hasSize(2);
+
+        clock.addAndGet(2 * MINUTE);
+        denylist.flush();
+
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8)).containsExactly("later " + (clock.get() + 58 * MINUTE));
+    }
+
+    @Test
+    void missingFileLoadsNothing(@TempDir Path directory) throws IOException {
+        JWTDenylist denylist = new JWTDenylist(100, directory.resolve("none").toString(), clock::get);
+
+        denylist.load();
+
+        assertThat(denylist.size()).isZero();
+    }
+
+    private static List<String> ids(String prefix, int count) {
+        return IntStream.range(0, count).mapToObj(i -> prefix + i).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,83 @@
+package dekra.user.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tokens of the issuer read back with the jjwt parser, as the authorization filter reads them
+ */
+class JWTTokenIssuerTest {
+
+    private static final String SECRET = "mySecretKey";
+
+    private final JWTTokenIssuer issuer = new JWTTokenIssuer(SECRET, Duration.ofMinutes(10), "user-service");
+
+    @Test
+    void tokenHasTheClaimsOfTheUser() {
+        long before = System.currentTimeMillis() / 1000 * 1000;
+
+        String token = issuer.issue("admin");
+        Claims claims = parse(token);
+
+        assertThat(token).startsWith(JWTTokenIssuer.PREFIX);
+        assertThat(claims.getSubject()).isEqualTo("admin");
+        assertThat(claims.getIssuer()).isEqualTo("user-service");
+        assertThat(claims.getId()).isNotEmpty();
+        assertThat(claims.get("authorities")).isEqualTo(List.of("ROLE_USER"));
+        assertThat(claims.getIssuedAt()).isBetween(new Date(before), new Date(), true, true);
+        assertThat(claims.getExpiration().getTime() - claims.getIssuedAt().getTime()).isEqualTo(Duration.ofMinutes(10).toMillis());
+    }
+
+    @Test
+    void everyTokenHasItsOwnId() {
+        assertThat(parse(issuer.issue("admin")).getId()).isNotEqualTo(parse(issuer.issue("admin")).getId());
+    }
+
+    @Test
+    void issuerIsLeftOutWhenNotConfigured() {
+        Claims claims = parse(new JWTTokenIssuer(SECRET, Duration.ofMinutes(10), "").issue("admin"));
+
+        assertThat(claims.getIssuer()).isNull();
+        assertThat(claims.containsKey("iss")).isFalse();
+        assertThat(claims.getSubject()).isEqualTo("admin");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"quo\"ted", "back\\slash", "\"\\\"", "tab\tnew\nline\u0000", "ñandú", "emoji 😀", "</script>", ""})
+    void usernamesAreEscaped(String username) {
+        Claims claims = parse(issuer.issue(username));
+
+        assertThat(claims.getSubject()).isEqualTo(username);
+        assertThat(claims.get("authorities")).isEqualTo(List.of("ROLE_USER"));
+    }
+
+    @Test
+    void issuerIsEscaped() {
+        assertThat(parse(new JWTTokenIssuer(SECRET, Duration.ofMinutes(10), "the \"user\" service").issue("admin")).getIssuer())
+                .isEqualTo("the \"user\" service");
+    }
+
+    @Test
+    void tokenSignedWithAnotherSecretIsRejected() {
+        String token = new JWTTokenIssuer("anotherSecret", Duration.ofMinutes(10), "").issue("admin");
+
+        assertThatThrownBy(() -> parse(token)).isInstanceOf(SignatureException.class);
+    }
+
+    private static Claims parse(String token) {
+        return Jwts.parser().setSigningKey(SECRET.getBytes(StandardCharsets.UTF_8))
+                .parseClaimsJws(token.substring(JWTTokenIssuer.PREFIX.length())).getBody();
+    }
+}
@@ -0,0 +1,19 @@
+package dekra.user.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitsTest {
+
+    @Test
+    void pathsAreNormalizedWithoutEmptySegments() {
+        assertThat(RateLimits.normalize("/auth/login")).isEqualTo("/auth/login");
+        assertThat(RateLimits.normalize("/auth/login/")).isEqualTo("/auth/login");
+        assertThat(RateLimits.normalize("//auth///login//")).isEqualTo("/auth/login");
+        assertThat(RateLimits.normalize("auth/login")).isEqualTo("/auth/login");
+        assertThat(RateLimits.normalize("/")).isEqualTo("/");
+        assertThat(RateLimits.normalize("//")).isEqualTo("/");
+        assertThat(RateLimits.normalize("")).isEqualTo("/");
+    }
+}
@@ -0,0 +1,123 @@
+package dekra.user.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Token buckets on a clock moved by hand
+ */
+class TokenBucketsTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Any start, the buckets only compare times
+     */
+    private final AtomicLong clock = new AtomicLong(-7 * SECOND);
+
+    @Test
+    void fullBucketAllowsABurst() {
+        TokenBuckets buckets = new TokenBuckets(3, 1, 100, clock::get);
+
+        assertThat(IntStream.range(0, 3).mapToLong(i -> buckets.tryAcquire("key"))).containsOnly(0L);
+        assertThat(buckets.tryAcquire("key")).isEqualTo(SECOND);
+    }
+
+    @Test
+    void waitIsTheTimeToTheNextToken() {
+        TokenBuckets buckets = new TokenBuckets(1, 0.2, 100, clock::get);
+
+        assertThat(buckets.tryAcquire("key")).isZero();
+        assertThat(buckets.tryAcquire("key")).isEqualTo(5 * SECOND);
+        advance(2 * SECOND);
+        assertThat(buckets.tryAcquire("key")).isEqualTo(3 * SECOND);
+        advance(3 * SECOND - 1);
+        assertThat(buckets.tryAcquire("key")).isEqualTo(1);
+        advance(1);
+        assertThat(buckets.tryAcquire("key")).isZero();
+    }
+
+    @Test
+    void tokensRefillUpToTheCapacity() {
+        TokenBuckets buckets = new TokenBuckets(3, 2, 100, clock::get);
+        IntStream.range(0, 3).forEach(i -> buckets.tryAcquire("key"));
+
+        advance(SECOND);
+        assertThat(buckets.tryAcquire("key")).isZero();
+        assertThat(buckets.tryAcquire("key")).isZero();
+        assertThat(buckets.tryAcquire("key")).isPositive();
+
+        // idle far longer than a refill, still no more than a burst
+        advance(60 * SECOND);
+        assertThat(IntStream.range(0, 3).mapToLong(i -> buckets.tryAcquire("key"))).containsOnly(0L);
+        assertThat(buckets.tryAcquire("key")).isEqualTo(SECOND / 2);
+    }
+
+    @Test
+    void keysHaveTheirOwnBuckets() {
+        TokenBuckets buckets = new TokenBuckets(1, 1, 100, clock::get);
+
+        assertThat(buckets.tryAcquire("one")).isZero();
+        assertThat(buckets.tryAcquire("one")).isPositive();
+        assertThat(buckets.tryAcquire("two")).isZero();
+    }
+
+    @Test
+    void keysOverTheMaximumAreNotLimitedUntilABucketRefills() {
+        // a single bucket in each stripe
+        TokenBuckets buckets = new TokenBuckets(1, 1, 1, clock::get);
+        String tracked = "key0";
+        String other = keyInTheStripeOf(tracked);
+        assertThat(buckets.tryAcquire(tracked)).isZero();
+
+        assertThat(buckets.tryAcquire(other)).isZero();
+        assertThat(buckets.tryAcquire(other)).isZero();
+        advance(SECOND / 2);
+        assertThat(buckets.tryAcquire(other)).isZero();
+        assertThat(buckets.getUntracked()).isEqualTo(3);
+        assertThat(buckets.tryAcquire(tracked)).isPositive();
+
+        // the bucket of the first key is full again, it is dropped for the other key
+        advance(SECOND / 2);
+        assertThat(buckets.tryAcquire(other)).isZero();
+        assertThat(buckets.tryAcquire(other)).isPositive();
+        assertThat(buckets.getUntracked()).isEqualTo(3);
+        assertThat(buckets.tryAcquire(tracked)).isZero();
+        assertThat(buckets.getUntracked()).isEqualTo(4);
+    }
+
+    @Test
+    void keysOfOtherStripesAreTracked() {
+        TokenBuckets buckets = new TokenBuckets(1, 1, 1, clock::get);
+        String tracked = "key0";
+        String other = IntStream.range(1, 1000).mapToObj(i -> "key" + i)
+                .filter(key -> stripe(key) != stripe(tracked)).findFirst().orElseThrow();
+        buckets.tryAcquire(tracked);
+
+        assertThat(buckets.tryAcquire(other)).isZero();
+        assertThat(buckets.tryAcquire(other)).isPositive();
+        assertThat(buckets.getUntracked()).isZero();
+    }
+
+    private void advance(long nanos) {
+        clock.addAndGet(nanos);
+    }
+
+    private static String keyInTheStripeOf(String key) {
+        return IntStream.range(1, 1000).mapToObj(i -> "key" + i)
+                .filter(other -> stripe(other) == stripe(key)).findFirst().orElseThrow();
+    }
+
+    /**
+     * Stripe of a key, as the buckets spread them over their 16 stripes
+     */
+    private static int stripe(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & 15;
+    }
+}
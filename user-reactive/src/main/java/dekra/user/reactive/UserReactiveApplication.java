@@ -0,0 +1,35 @@
+package dekra.user.reactive;
+
+import dekra.user.services.UserValidationService;
+import dekra.user.services.impl.UserValidationServiceImpl;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.security.reactive.ReactiveUserDetailsServiceAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import javax.validation.Validator;
+
+/**
+ * The user API on a non-blocking stack: WebFlux on Netty and R2DBC against H2. It shares the
+ * user model, the validation rules, the password hashing and the tokens of the servlet app
+ * through user-core. Its settings are read from user-reactive.properties.
+ */
+@SpringBootApplication(exclude = ReactiveUserDetailsServiceAutoConfiguration.class)
+@EnableScheduling
+public class UserReactiveApplication {
+
+	public static void main(String[] args) {
+		new SpringApplicationBuilder(UserReactiveApplication.class)
+				.web(WebApplicationType.REACTIVE)
+				.properties("spring.config.name=user-reactive")
+				.run(args);
+	}
+
+	@Bean
+	public UserValidationService userValidationService(Validator validator) {
+		return new UserValidationServiceImpl(validator);
+	}
+
+}
@@ -0,0 +1,82 @@
+package dekra.user.reactive.controller;
+
+import dekra.user.exception.ErrorMessage;
+import dekra.user.model.entities.LoginResponse;
+import dekra.user.model.entities.User;
+import dekra.user.reactive.repository.ReactiveUserRepository;
+import dekra.user.reactive.security.ReactiveJWTService;
+import dekra.user.services.PasswordHashingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+@Log4j2
+@RestController
+@RequiredArgsConstructor
+@RequestMapping(path = "auth")
+public class ReactiveAuthController {
+
+    private final ReactiveUserRepository userRepository;
+    private final PasswordHashingService passwordHashingService;
+    private final ReactiveJWTService jwtService;
+
+    @PostMapping("/login")
+    public Mono<ResponseEntity> login(@RequestParam("username") String username, @RequestParam("password") String pwd) {
+        return userRepository.findByUserName(username)
+                .flatMap(user -> checkPassword(user, pwd))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    log.error(String.format("User - %s - does not exist" , username));
+                    return new ResponseEntity<>(new ErrorMessage(String.format("User - %s - does not exist" , username)), HttpStatus.BAD_REQUEST);
+                }))
+                .onErrorResume(TaskRejectedException.class, e -> {
+                    log.error("Password hashing pool saturated, login rejected");
+                    return Mono.just(ReactiveUserController.serverBusy());
+                });
+    }
+
+    @PostMapping("/logout")
+    public Mono<ResponseEntity> logout(Authentication authentication) {
+        jwtService.revoke(authentication);
+        return Mono.just(new ResponseEntity<>(String.format("User - %s - has been logged out successfully", authentication.getName()), HttpStatus.OK));
+    }
+
+    /**
+     * Check the password of an user and log it in
+     * @param user, the user
+     * @param pwd, the password sent
+     * @return the user id and its token, or a bad request if the password does not match
+     */
+    private Mono<ResponseEntity> checkPassword(User user, String pwd) {
+        String storedPassword = user.getPassword();
+        return Mono.defer(() -> Mono.fromFuture(passwordHashingService.matches(pwd, storedPassword))).flatMap(matches -> {
+            if (!matches && !storedPassword.equals(pwd)) {
+                log.error("Password not valid");
+                return Mono.just(new ResponseEntity<>(new ErrorMessage("Password not valid"), HttpStatus.BAD_REQUEST));
+            }
+            user.setLastLogging(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+            user.setToken(jwtService.issue(user.getUsername()));
+            Mono<Integer> recorded = userRepository.updateLastLogging(user.getId(), user.getLastLogging());
+            if (!passwordHashingService.needsRehash(storedPassword)) {
+                return recorded.thenReturn(new ResponseEntity<>(LoginResponse.of(user), HttpStatus.OK));
+            }
+            // the stored hash is plain text or uses another strength, upgrade it transparently
+            return recorded
+                    .then(Mono.defer(() -> Mono.fromFuture(passwordHashingService.encode(pwd)))
+                            .flatMap(hash -> userRepository.updatePassword(user.getId(), hash).doOnNext(rows -> user.setPassword(hash)))
+                            // pool saturated, the upgrade is left for a later login
+                            .onErrorResume(TaskRejectedException.class, e -> Mono.empty()))
+                    .then(Mono.fromSupplier(() -> new ResponseEntity<>(LoginResponse.of(user), HttpStatus.OK)));
+        });
+    }
+}
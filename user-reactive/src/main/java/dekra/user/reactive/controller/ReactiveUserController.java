@@ -0,0 +1,315 @@
+package dekra.user.reactive.controller;
+
+import dekra.user.controller.ContinuationToken;
+import dekra.user.controller.UserETag;
+import dekra.user.exception.ErrorMessage;
+import dekra.user.exception.UserAlreadyExistsException;
+import dekra.user.model.entities.User;
+import dekra.user.model.entities.UserCursor;
+import dekra.user.model.entities.UserFilter;
+import dekra.user.model.entities.UserImportRequest;
+import dekra.user.model.entities.UserImportResult;
+import dekra.user.model.entities.UserPage;
+import dekra.user.model.entities.UserSort;
+import dekra.user.model.entities.UserSummary;
+import dekra.user.model.entities.UserValidationError;
+import dekra.user.reactive.repository.ReactiveUserRepository;
+import dekra.user.services.PasswordHashingService;
+import dekra.user.services.UserValidationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.util.StringUtils;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Same contract as the servlet UserController. Validation runs inline, it is cheap, password
+ * hashing on the bounded hashing pool and the database work through R2DBC.
+ */
+@Log4j2
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/user")
+public class ReactiveUserController {
+
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private final ReactiveUserRepository userRepository;
+
+    private final UserValidationService userValidationService;
+
+    private final PasswordHashingService passwordHashingService;
+
+    private final PasswordEncoder passwordEncoder;
+
+    @Value("${user.list.default-page-size}")
+    private int defaultPageSize;
+
+    @Value("${user.list.max-page-size}")
+    private int maxPageSize;
+
+    @Value("${security.bcrypt.pool-size:0}")
+    private int hashingConcurrency;
+
+    @PostMapping(value = "/create")
+    public Mono<ResponseEntity> createUser(
+            @RequestParam String username, @RequestParam String password, @RequestParam(required = false) String name,
+            @RequestParam(required = false) String surname, @RequestParam(required = false) String email,
+            @RequestParam(required = false) boolean active, @RequestParam(required = false) Integer age) {
+        User user = new User(username, password, name, surname, email, active, age, LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+        List<UserValidationError> validationErrors = userValidationService.validateUser(user);
+        if (!validationErrors.isEmpty()) {
+            return Mono.just(new ResponseEntity<>(validationErrors, HttpStatus.BAD_REQUEST));
+        }
+        return Mono.defer(() -> Mono.fromFuture(passwordHashingService.encode(password)))
+                .flatMap(hash -> {
+                    user.setPassword(hash);
+                    return userRepository.insert(user);
+                })
+                .map(created -> (ResponseEntity) new ResponseEntity<>(UserSummary.of(created), HttpStatus.OK))
+                .onErrorResume(this::creationFailed);
+    }
+
+    private Mono<ResponseEntity> creationFailed(Throwable e) {
+        if (e instanceof UserAlreadyExistsException) {
+            return Mono.just(new ResponseEntity<>(new ErrorMessage("Username already exists"), HttpStatus.BAD_REQUEST));
+        }
+        if (e instanceof TaskRejectedException) {
+            log.error("Password hashing pool saturated, user creation rejected");
+            return Mono.just(serverBusy());
+        }
+        log.error("Error creating user", e);
+        return Mono.just(new ResponseEntity<>(new ErrorMessage(e.getLocalizedMessage()), HttpStatus.INTERNAL_SERVER_ERROR));
+    }
+
+    /**
+     * Import users from a json array or newline delimited json. Rows are decoded as they arrive
+     * and the passwords of several rows are hashed at the same time, results keep the row order
+     * @param rows, the users to create
+     * @return the result of every row
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE})
+    public Flux<UserImportResult> importUsers(@RequestBody Flux<UserImportRequest> rows) {
+        int concurrency = hashingConcurrency > 0 ? hashingConcurrency : Runtime.getRuntime().availableProcessors();
+        return rows.index().flatMapSequential(row -> importRow(row.getT1() + 1, row.getT2()), concurrency);
+    }
+
+    private Mono<UserImportResult> importRow(long row, UserImportRequest request) {
+        User user = new User(request.getUsername(), request.getPassword(), request.getName(), request.getSurname(),
+                request.getEmail(), request.isActive(), request.getAge(), LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+        List<UserValidationError> validationErrors = userValidationService.validateUser(user);
+        if (!validationErrors.isEmpty()) {
+            return Mono.just(failed(row, request.getUsername(), validationErrors.stream()
+                    .map(error -> error.getError() + ": " + error.getDescription()).collect(Collectors.toList())));
+        }
+        return Mono.defer(() -> Mono.fromFuture(passwordHashingService.encode(request.getPassword())))
+                // hashing pool saturated by other requests, the import goes on at its own pace
+                .onErrorResume(TaskRejectedException.class, e -> Mono.fromCallable(() -> passwordEncoder.encode(request.getPassword()))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .flatMap(hash -> {
+                    user.setPassword(hash);
+                    return userRepository.insert(user);
+                })
+                .map(created -> UserImportResult.builder().row(row).username(request.getUsername())
+                        .status(UserImportResult.Status.CREATED).id(created.getId()).build())
+                .onErrorResume(e -> Mono.just(failed(row, request.getUsername(),
+                        e instanceof UserAlreadyExistsException ? "Username already exists" : e.getLocalizedMessage())));
+    }
+
+    @DeleteMapping(value = "/delete/{id}")
+    public Mono<ResponseEntity> deleteUser(@PathVariable(value = "id") Long userId) {
+        return userRepository.deleteById(userId).map(rows -> {
+            if (rows == 0) {
+                log.error(String.format("Error removing user, user with id: %s can't be found" , userId));
+                return new ResponseEntity<>(new ErrorMessage(String.format("Error removing user, user with id: %s can't be found" , userId)), HttpStatus.BAD_REQUEST);
+            }
+            return new ResponseEntity<>(String.format("User with id: %s has been removed successfully" , userId), HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Get an user, its ETag is its version. An unchanged user is answered 304 to the If-None-Match
+     * of its ETag
+     * @param id, the id of the user
+     * @param ifNoneMatch, the ETags the client has, if any
+     * @return the user, 304 if it has not changed or 404 if it does not exist
+     */
+    @GetMapping(value = "/{id:\\d+}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity> getUser(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return userRepository.findSummaryById(id)
+                .map(user -> {
+                    String etag = UserETag.of(user.getVersion());
+                    if (ifNoneMatch != null && UserETag.matches(ifNoneMatch, etag)) {
+                        return (ResponseEntity) ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+                    }
+                    return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(user);
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> new ResponseEntity<>(
+                        new ErrorMessage(String.format("User with id: %s can't be found" , id)), HttpStatus.NOT_FOUND)));
+    }
+
+    @PatchMapping("/update/{id}")
+    public Mono<ResponseEntity> updateUser(@PathVariable Long id, @RequestParam(required = false) String name, @RequestParam(required = false) String surname,
+                                           @RequestParam(required = false) Boolean active, @RequestParam(required = false) Integer age,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = null;
+        if (ifMatch != null && !"*".equals(ifMatch.trim())) {
+            expectedVersion = UserETag.version(ifMatch.trim());
+            if (expectedVersion == null) {
+                // weak or foreign ETags never match
+                return Mono.just(modified(id));
+            }
+        }
+        String newName = StringUtils.hasLength(name) ? name : null;
+        String newSurname = StringUtils.hasLength(surname) ? surname : null;
+
+        // only the given values are validated and written, the user is not loaded first
+        List<UserValidationError> validationErrors = new ArrayList<>();
+        if (newName != null)
+            validationErrors.addAll(userValidationService.validateValue("name", newName));
+        if (newSurname != null)
+            validationErrors.addAll(userValidationService.validateValue("surname", newSurname));
+        if (age != null)
+            validationErrors.addAll(userValidationService.validateValue("age", age));
+        if (active != null)
+            validationErrors.addAll(userValidationService.validateValue("active", active));
+        if (!validationErrors.isEmpty()) {
+            return Mono.just(new ResponseEntity<>(validationErrors, HttpStatus.BAD_REQUEST));
+        }
+        boolean conditional = expectedVersion != null;
+        return userRepository.patchById(id, newName, newSurname, active, age, expectedVersion)
+                .flatMap(rows -> userRepository.findSummaryById(id).map(user -> {
+                    if (rows > 0) {
+                        return (ResponseEntity) ResponseEntity.ok().eTag(UserETag.of(user.getVersion())).body(user);
+                    }
+                    // the version is only checked once the update misses
+                    return conditional ? modified(id) : notFound(id);
+                }))
+                .switchIfEmpty(Mono.fromSupplier(() -> notFound(id)));
+    }
+
+    private static ResponseEntity modified(Long id) {
+        return new ResponseEntity<>(new ErrorMessage(String.format("Error updating user, user with id: %s has changed, get it again" , id)),
+                HttpStatus.PRECONDITION_FAILED);
+    }
+
+    private static ResponseEntity notFound(Long id) {
+        return new ResponseEntity<>(new ErrorMessage(String.format("Error updating user, user with id: %s can't be found" , id)), HttpStatus.BAD_REQUEST);
+    }
+
+    @GetMapping(value = "/list", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity> getAllUsers(UserFilter filter, BindingResult filterErrors, @RequestParam(required = false) String sort,
+                                            @RequestParam(required = false) String next, @RequestParam(required = false) Integer size) {
+        if (filterErrors.hasErrors()) {
+            return Mono.just(invalidFilter(filterErrors));
+        }
+        int pageSize = size == null ? defaultPageSize : size;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            return Mono.just(new ResponseEntity<>(new ErrorMessage(String.format("Page size must be between 1 and %s", maxPageSize)), HttpStatus.BAD_REQUEST));
+        }
+        UserSort userSort;
+        try {
+            userSort = sort == null ? UserSort.DEFAULT : UserSort.parse(sort);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(invalidSort(sort));
+        }
+        UserCursor after;
+        try {
+            after = next == null ? null : ContinuationToken.decode(next, userSort);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(new ResponseEntity<>(new ErrorMessage("Invalid continuation token"), HttpStatus.BAD_REQUEST));
+        }
+
+        // one extra row tells whether there is a next page without counting
+        return userRepository.findSummaries(filter, userSort, after, pageSize + 1).collectList().map(users -> {
+            String nextToken = null;
+            if (users.size() > pageSize) {
+                users = users.subList(0, pageSize);
+                nextToken = ContinuationToken.encode(userSort, users.get(pageSize - 1));
+            }
+            return new ResponseEntity<>(new UserPage(users, nextToken), HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Stream the users matching the filters as newline delimited json. Rows are fetched as the
+     * client reads them, a slow client slows the query down instead of filling the memory
+     * @param filter, the users to stream
+     * @param filterErrors, the filters that could not be read
+     * @param sort, the order of the users, by id if not given
+     * @return the users, or a bad request in json
+     */
+    @GetMapping(value = "/list", produces = NDJSON_VALUE)
+    public ResponseEntity<?> streamAllUsers(UserFilter filter, BindingResult filterErrors, @RequestParam(required = false) String sort) {
+        if (filterErrors.hasErrors()) {
+            return streamed(invalidFilter(filterErrors));
+        }
+        UserSort userSort;
+        try {
+            userSort = sort == null ? UserSort.DEFAULT : UserSort.parse(sort);
+        } catch (IllegalArgumentException e) {
+            return streamed(invalidSort(sort));
+        }
+        return ResponseEntity.ok(userRepository.streamSummaries(filter, userSort));
+    }
+
+    private static ResponseEntity invalidFilter(BindingResult filterErrors) {
+        return new ResponseEntity<>(new ErrorMessage(filterErrors.getFieldErrors().stream()
+                .map(error -> String.format("Invalid value for %s: %s", error.getField(), error.getRejectedValue()))
+                .collect(Collectors.toList())), HttpStatus.BAD_REQUEST);
+    }
+
+    private static ResponseEntity invalidSort(String sort) {
+        return new ResponseEntity<>(new ErrorMessage(String.format("Invalid sort: %s, use a field among id, name, surname, age, "
+                + "creationDate and lastLogging, optionally followed by ,asc or ,desc", sort)), HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Error response of a streaming method, written as json
+     * @param error, the error response
+     * @return the same response, in json
+     */
+    private static ResponseEntity<?> streamed(ResponseEntity<?> error) {
+        return ResponseEntity.status(error.getStatusCode()).contentType(MediaType.APPLICATION_JSON).body(error.getBody());
+    }
+
+    private static UserImportResult failed(long row, String username, List<String> errors) {
+        return UserImportResult.builder().row(row).username(username).status(UserImportResult.Status.FAILED).errors(errors).build();
+    }
+
+    private static UserImportResult failed(long row, String username, String error) {
+        return failed(row, username, Collections.singletonList(error));
+    }
+
+    static ResponseEntity serverBusy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1").body(new ErrorMessage("Server busy, try again later"));
+    }
+}
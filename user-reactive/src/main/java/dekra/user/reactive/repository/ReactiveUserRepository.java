@@ -0,0 +1,331 @@
+package dekra.user.reactive.repository;
+
+import dekra.user.exception.UserAlreadyExistsException;
+import dekra.user.model.entities.User;
+import dekra.user.model.entities.UserCursor;
+import dekra.user.model.entities.UserFilter;
+import dekra.user.model.entities.UserSort;
+import dekra.user.model.entities.UserSummary;
+import io.r2dbc.spi.Row;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Users table accessed through R2DBC. The rows are mapped by hand to the JPA entity of the
+ * servlet app, Spring Data R2DBC does not understand the JPA mapping annotations.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReactiveUserRepository {
+
+    private static final String COLUMNS = "ID, ACTIVE, AGE, CREATION_DATE, EMAIL, LAST_LOGGING, NAME, PASSWORD, SURNAME, USER_NAME, VERSION";
+
+    private static final String SELECT = "SELECT " + COLUMNS + " FROM USER";
+
+    private static final String SELECT_SUMMARY = "SELECT ID, ACTIVE, AGE, CREATION_DATE, EMAIL, LAST_LOGGING, NAME, SURNAME, USER_NAME, VERSION FROM USER";
+
+    private final DatabaseClient databaseClient;
+
+    public Mono<User> findById(Long id) {
+        return databaseClient.sql(SELECT + " WHERE ID = :id")
+                .bind("id", id)
+                .map(ReactiveUserRepository::toUser)
+                .one();
+    }
+
+    public Mono<User> findByUserName(String userName) {
+        return databaseClient.sql(SELECT + " WHERE USER_NAME = :userName")
+                .bind("userName", userName)
+                .map(ReactiveUserRepository::toUser)
+                .one();
+    }
+
+    /**
+     * Get the summaries of a page of the users matching some filters, in a determined order
+     * @param filter, the users to list
+     * @param sort, the order of the list
+     * @param after, the position the page starts after, null for the first page
+     * @param limit, the maximum number of users
+     * @return the users
+     */
+    public Flux<UserSummary> findSummaries(UserFilter filter, UserSort sort, UserCursor after, int limit) {
+        return new SummaryQuery(filter, sort, after).execute(databaseClient, limit);
+    }
+
+    /**
+     * Get the summary of every user matching some filters. Rows are read as the subscriber
+     * requests them
+     * @param filter, the users to list
+     * @param sort, the order of the list
+     * @return the users
+     */
+    public Flux<UserSummary> streamSummaries(UserFilter filter, UserSort sort) {
+        return new SummaryQuery(filter, sort, null).execute(databaseClient, null);
+    }
+
+    /**
+     * Insert a new user, its id is set from the sequence
+     * @param user, the user to insert
+     * @return the user inserted
+     * @throws UserAlreadyExistsException, as error signal, if the username is taken
+     */
+    public Mono<User> insert(User user) {
+        DatabaseClient.GenericExecuteSpec insert = databaseClient.sql("INSERT INTO USER (" + COLUMNS + ") VALUES (NEXT VALUE FOR USER_SEQ, "
+                + ":active, :age, :creationDate, :email, :lastLogging, :name, :password, :surname, :userName, 0)");
+        return bindColumns(insert, user)
+                .filter(statement -> statement.returnGeneratedValues("ID"))
+                .map(row -> row.get("ID", Long.class))
+                .one()
+                .map(id -> {
+                    user.setId(id);
+                    user.setVersion(0L);
+                    return user;
+                })
+                .onErrorMap(DataIntegrityViolationException.class, e -> isUserNameTaken(e) ? new UserAlreadyExistsException(user.getUsername()) : e);
+    }
+
+    public Mono<UserSummary> findSummaryById(Long id) {
+        return databaseClient.sql(SELECT_SUMMARY + " WHERE ID = :id")
+                .bind("id", id)
+                .map(ReactiveUserRepository::toSummary)
+                .one();
+    }
+
+    /**
+     * Update the given columns of an user in a single statement, the user is not loaded first.
+     * The other columns are not written, so a concurrent password upgrade or last login is kept
+     * @param id, the id of the user
+     * @param name, the new name, null to keep it
+     * @param surname, the new surname, null to keep it
+     * @param active, whether the user is active, null to keep it
+     * @param age, the new age, null to keep it
+     * @param expectedVersion, the version the user must have to be updated, null to update any
+     * @return the number of users updated, 0 if it does not exist or has another version
+     */
+    public Mono<Integer> patchById(Long id, String name, String surname, Boolean active, Integer age, Long expectedVersion) {
+        StringBuilder sql = new StringBuilder("UPDATE USER SET VERSION = VERSION + 1");
+        if (active != null) {
+            sql.append(", ACTIVE = :active");
+        }
+        if (name != null) {
+            sql.append(", NAME = :name");
+        }
+        if (surname != null) {
+            sql.append(", SURNAME = :surname");
+        }
+        if (age != null) {
+            sql.append(", AGE = :age");
+        }
+        sql.append(" WHERE ID = :id");
+        if (expectedVersion != null) {
+            sql.append(" AND VERSION = :version");
+        }
+        DatabaseClient.GenericExecuteSpec patch = databaseClient.sql(sql.toString())
+                .bind("id", id);
+        if (expectedVersion != null) {
+            patch = patch.bind("version", expectedVersion);
+        }
+        if (active != null) {
+            patch = patch.bind("active", active);
+        }
+        if (name != null) {
+            patch = patch.bind("name", name);
+        }
+        if (surname != null) {
+            patch = patch.bind("surname", surname);
+        }
+        if (age != null) {
+            patch = patch.bind("age", age);
+        }
+        return patch.fetch().rowsUpdated();
+    }
+
+    public Mono<Integer> updateLastLogging(Long id, LocalDateTime lastLogging) {
+        return databaseClient.sql("UPDATE USER SET LAST_LOGGING = :lastLogging, VERSION = VERSION + 1 WHERE ID = :id")
+                .bind("lastLogging", lastLogging)
+                .bind("id", id)
+                .fetch().rowsUpdated();
+    }
+
+    /**
+     * Replace the password of an user, its version is kept: the password is not part of what the
+     * responses show, as in the servlet app
+     * @param id, the id of the user
+     * @param password, the new password hash
+     * @return the number of users updated
+     */
+    public Mono<Integer> updatePassword(Long id, String password) {
+        return databaseClient.sql("UPDATE USER SET PASSWORD = :password WHERE ID = :id")
+                .bind("password", password)
+                .bind("id", id)
+                .fetch().rowsUpdated();
+    }
+
+    public Mono<Integer> deleteById(Long id) {
+        return databaseClient.sql("DELETE FROM USER WHERE ID = :id")
+                .bind("id", id)
+                .fetch().rowsUpdated();
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindColumns(DatabaseClient.GenericExecuteSpec spec, User user) {
+        spec = spec.bind("active", user.isActive());
+        spec = bind(spec, "age", user.getAge(), Integer.class);
+        spec = bind(spec, "creationDate", user.getCreationDate(), LocalDateTime.class);
+        spec = bind(spec, "email", user.getEmail(), String.class);
+        spec = bind(spec, "lastLogging", user.getLastLogging(), LocalDateTime.class);
+        spec = bind(spec, "name", user.getName(), String.class);
+        spec = bind(spec, "password", user.getPassword(), String.class);
+        spec = bind(spec, "surname", user.getSurname(), String.class);
+        return bind(spec, "userName", user.getUsername(), String.class);
+    }
+
+    private static <T> DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, String name, T value, Class<T> type) {
+        return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+    }
+
+    private static boolean isUserNameTaken(DataIntegrityViolationException e) {
+        return e.getMessage() != null && e.getMessage().toUpperCase().contains(User.USER_NAME_INDEX);
+    }
+
+    /**
+     * Query of the user list, with the same conditions and order as the servlet app: users
+     * without the sort field are listed first in ascending order and last in descending order,
+     * and the id breaks ties
+     */
+    private static final class SummaryQuery {
+
+        private static final char ESCAPE = '\\';
+
+        private final List<String> conditions = new ArrayList<>();
+
+        private final Map<String, Object> parameters = new LinkedHashMap<>();
+
+        private final String orderBy;
+
+        private SummaryQuery(UserFilter filter, UserSort sort, UserCursor after) {
+            if (filter != null) {
+                condition("ACTIVE = :active", "active", filter.getActive());
+                condition("AGE >= :minAge", "minAge", filter.getMinAge());
+                condition("AGE <= :maxAge", "maxAge", filter.getMaxAge());
+                condition("CREATION_DATE >= :createdFrom", "createdFrom", filter.getCreatedFrom());
+                condition("CREATION_DATE < :createdTo", "createdTo", filter.getCreatedTo());
+                condition("LAST_LOGGING >= :lastLoggingFrom", "lastLoggingFrom", filter.getLastLoggingFrom());
+                condition("LAST_LOGGING < :lastLoggingTo", "lastLoggingTo", filter.getLastLoggingTo());
+                condition("NAME LIKE :name ESCAPE '" + ESCAPE + "'", "name", likePrefix(filter.getName()));
+                condition("SURNAME LIKE :surname ESCAPE '" + ESCAPE + "'", "surname", likePrefix(filter.getSurname()));
+            }
+            boolean ascending = sort.isAscending();
+            String column = column(sort.getField());
+            if (after != null) {
+                after(column, ascending, after);
+            }
+            String direction = ascending ? " ASC" : " DESC";
+            orderBy = sort.getField() == UserSort.Field.ID ? "ID" + direction
+                    : column + direction + (ascending ? " NULLS FIRST" : " NULLS LAST") + ", ID" + direction;
+        }
+
+        private Flux<UserSummary> execute(DatabaseClient databaseClient, Integer limit) {
+            StringBuilder sql = new StringBuilder(SELECT_SUMMARY);
+            if (!conditions.isEmpty()) {
+                sql.append(" WHERE ").append(String.join(" AND ", conditions));
+            }
+            sql.append(" ORDER BY ").append(orderBy);
+            if (limit != null) {
+                sql.append(" LIMIT :limit");
+                parameters.put("limit", limit);
+            }
+            DatabaseClient.GenericExecuteSpec query = databaseClient.sql(sql.toString());
+            for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+                query = query.bind(parameter.getKey(), parameter.getValue());
+            }
+            return query.map(ReactiveUserRepository::toSummary).all();
+        }
+
+        private void condition(String condition, String name, Object value) {
+            if (value != null) {
+                conditions.add(condition);
+                parameters.put(name, value);
+            }
+        }
+
+        /**
+         * Users after a position in the list
+         * @param column, the column of the sort field
+         * @param ascending, the direction of the list
+         * @param after, the position
+         */
+        private void after(String column, boolean ascending, UserCursor after) {
+            String idAfter = ascending ? "ID > :afterId" : "ID < :afterId";
+            parameters.put("afterId", after.getId());
+            if ("ID".equals(column)) {
+                conditions.add(idAfter);
+            } else if (after.getValue() == null) {
+                conditions.add(ascending ? "((" + column + " IS NULL AND " + idAfter + ") OR " + column + " IS NOT NULL)"
+                        : "(" + column + " IS NULL AND " + idAfter + ")");
+            } else {
+                parameters.put("afterValue", after.getValue());
+                String valueAfter = "(" + column + (ascending ? " > " : " < ") + ":afterValue OR (" + column + " = :afterValue AND "
+                        + idAfter + ")";
+                conditions.add(ascending ? valueAfter + ")" : valueAfter + " OR " + column + " IS NULL)");
+            }
+        }
+
+        private static String column(UserSort.Field field) {
+            switch (field) {
+                case NAME:
+                    return "NAME";
+                case SURNAME:
+                    return "SURNAME";
+                case AGE:
+                    return "AGE";
+                case CREATION_DATE:
+                    return "CREATION_DATE";
+                case LAST_LOGGING:
+                    return "LAST_LOGGING";
+                default:
+                    return "ID";
+            }
+        }
+
+        /**
+         * Pattern of a like matching the values starting with a prefix, without leading wildcard
+         * so an index is used
+         * @param prefix, the prefix, case sensitive
+         * @return the pattern, null when there is no prefix
+         */
+        private static String likePrefix(String prefix) {
+            if (prefix == null || prefix.isEmpty()) {
+                return null;
+            }
+            return prefix.replace(String.valueOf(ESCAPE), "" + ESCAPE + ESCAPE)
+                    .replace("%", ESCAPE + "%").replace("_", ESCAPE + "_") + "%";
+        }
+    }
+
+    private static User toUser(Row row) {
+        User user = new User(row.get("USER_NAME", String.class), row.get("PASSWORD", String.class), row.get("NAME", String.class),
+                row.get("SURNAME", String.class), row.get("EMAIL", String.class), row.get("ACTIVE", Boolean.class),
+                row.get("AGE", Integer.class), row.get("CREATION_DATE", LocalDateTime.class));
+        user.setId(row.get("ID", Long.class));
+        user.setLastLogging(row.get("LAST_LOGGING", LocalDateTime.class));
+        user.setVersion(row.get("VERSION", Long.class));
+        return user;
+    }
+
+    private static UserSummary toSummary(Row row) {
+        return new UserSummary(row.get("ID", Long.class), row.get("USER_NAME", String.class), row.get("NAME", String.class),
+                row.get("SURNAME", String.class), row.get("EMAIL", String.class), row.get("AGE", Integer.class),
+                Boolean.TRUE.equals(row.get("ACTIVE", Boolean.class)), row.get("LAST_LOGGING", LocalDateTime.class),
+                row.get("CREATION_DATE", LocalDateTime.class), row.get("VERSION", Long.class));
+    }
+}
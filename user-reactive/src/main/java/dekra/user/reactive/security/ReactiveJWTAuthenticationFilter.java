@@ -0,0 +1,43 @@
+package dekra.user.reactive.security;
+
+import io.jsonwebtoken.JwtException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of the servlet JWTAuthorizationFilter: requests with a valid bearer
+ * token run authenticated, invalid tokens are answered with 403
+ */
+@RequiredArgsConstructor
+public class ReactiveJWTAuthenticationFilter implements WebFilter {
+
+    private static final String PREFIX = "Bearer ";
+
+    private final ReactiveJWTService jwtService;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String authenticationHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authenticationHeader == null || !authenticationHeader.startsWith(PREFIX)) {
+            return chain.filter(exchange);
+        }
+        Authentication auth;
+        try {
+            auth = jwtService.authenticate(authenticationHeader.substring(PREFIX.length()));
+        } catch (JwtException e) {
+            exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN);
+            return exchange.getResponse().setComplete();
+        }
+        if (auth == null) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange).contextWrite(ReactiveSecurityContextHolder.withAuthentication(auth));
+    }
+}
@@ -0,0 +1,93 @@
+package dekra.user.reactive.security;
+
+import dekra.user.security.JWTAuthenticationCache;
+import dekra.user.security.JWTDenylist;
+import dekra.user.security.JWTTokenDetails;
+import dekra.user.security.JWTTokenIssuer;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Issues and verifies the JWT tokens, with the {@link JWTTokenIssuer} and the {@link JWTDenylist}
+ * of the servlet app. Each app has its own denylist, so with an issuer set only the tokens of
+ * this app are accepted: a token revoked by the servlet app is not accepted here either
+ */
+@Service
+public class ReactiveJWTService {
+
+    private final JWTTokenIssuer tokenIssuer;
+
+    private final JwtParser parser;
+
+    private final JWTAuthenticationCache authenticationCache;
+
+    private final JWTDenylist denylist;
+
+    public ReactiveJWTService(@Value("${security.jwt.secret}") String secret, @Value("${security.jwt.issuer:}") String issuer,
+                              JWTTokenIssuer tokenIssuer, JWTAuthenticationCache authenticationCache, JWTDenylist denylist) {
+        this.tokenIssuer = tokenIssuer;
+        this.parser = Jwts.parser().setSigningKey(secret.getBytes(StandardCharsets.UTF_8));
+        if (!issuer.isEmpty()) {
+            parser.requireIssuer(issuer);
+        }
+        this.authenticationCache = authenticationCache;
+        this.denylist = denylist;
+    }
+
+    /**
+     * Get the jwt token of a determined user
+     * @param username, the username to assign the token
+     * @return the jwt token, with the bearer prefix
+     */
+    public String issue(String username) {
+        return tokenIssuer.issue(username);
+    }
+
+    /**
+     * Revoke the token of an authentication, it is not accepted anymore even if it has not expired
+     * @param authentication, the authentication of the token
+     */
+    public void revoke(Authentication authentication) {
+        JWTTokenDetails token = (JWTTokenDetails) authentication.getDetails();
+        denylist.revoke(token.getId(), token.getExpiration());
+    }
+
+    /**
+     * Get the authentication of a token, from the cache when it has already been verified. The
+     * revocations are checked every time, cached or not
+     * @param jwtToken, the token without the bearer prefix
+     * @return the authentication, or null if the token carries no authorities or has been revoked
+     * @throws io.jsonwebtoken.JwtException if the token is not valid, or has no id or no expiration
+     */
+    public Authentication authenticate(String jwtToken) {
+        ByteBuffer key = authenticationCache.keyOf(jwtToken);
+        Authentication auth = authenticationCache.get(key);
+        if (auth == null) {
+            Claims claims = parser.parseClaimsJws(jwtToken).getBody();
+            JWTTokenDetails details = JWTTokenDetails.of(claims);
+            List<?> authorities = (List<?>) claims.get("authorities");
+            if (authorities != null) {
+                UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken(claims.getSubject(), null,
+                        authorities.stream().map(String::valueOf).map(SimpleGrantedAuthority::new).collect(Collectors.toList()));
+                token.setDetails(details);
+                auth = token;
+                authenticationCache.put(key, auth, claims.getExpiration());
+            }
+        }
+        if (auth != null && denylist.isRevoked(((JWTTokenDetails) auth.getDetails()).getId())) {
+            return null;
+        }
+        return auth;
+    }
+}
@@ -0,0 +1,84 @@
+package dekra.user.reactive.security;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dekra.user.exception.ErrorMessage;
+import dekra.user.security.RateLimitProperties;
+import dekra.user.security.RateLimits;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Reactive counterpart of the servlet RateLimitFilter, with the same {@link RateLimits}: requests
+ * over a limit are answered 429 with Retry-After before they are authenticated. The username is
+ * read from the query, as the login reads it
+ */
+public class ReactiveRateLimitFilter implements WebFilter {
+
+    private final RateLimits limits;
+
+    private final byte[] rejectedBody;
+
+    public ReactiveRateLimitFilter(RateLimitProperties properties, ObjectMapper objectMapper, MeterRegistry registry) throws JsonProcessingException {
+        this.limits = new RateLimits(properties, registry);
+        this.rejectedBody = objectMapper.writeValueAsBytes(new ErrorMessage("Too many requests, try again later"));
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        long wait = limits.tryAcquire(request.getMethodValue(), pathToMatch(request), () -> remoteAddress(request),
+                request.getQueryParams()::getFirst);
+        if (wait > 0) {
+            return reject(exchange.getResponse(), wait);
+        }
+        return chain.filter(exchange);
+    }
+
+    /**
+     * Answer a request over its limit
+     * @param response, the http response
+     * @param waitNanos, nanoseconds until the request would be allowed
+     */
+    private Mono<Void> reject(ServerHttpResponse response, long waitNanos) {
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, RateLimits.retryAfter(waitNanos));
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().setContentLength(rejectedBody.length);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(rejectedBody)));
+    }
+
+    /**
+     * Path of a request as the routing and the access rules match it: decoded and without matrix
+     * parameters, /auth/%6Cogin;x=1 is /auth/login
+     * @param request, the http request
+     * @return the path within the application to match
+     */
+    private static String pathToMatch(ServerHttpRequest request) {
+        StringBuilder path = new StringBuilder();
+        for (PathContainer.Element element : request.getPath().pathWithinApplication().elements()) {
+            path.append(element instanceof PathContainer.PathSegment
+                    ? ((PathContainer.PathSegment) element).valueToMatch() : element.value());
+        }
+        return path.toString();
+    }
+
+    private static String remoteAddress(ServerHttpRequest request) {
+        InetSocketAddress address = request.getRemoteAddress();
+        if (address == null) {
+            return null;
+        }
+        return address.getAddress() == null ? address.getHostString() : address.getAddress().getHostAddress();
+    }
+}
@@ -0,0 +1,114 @@
+package dekra.user.reactive.security;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dekra.user.security.JWTAuthenticationCache;
+import dekra.user.security.JWTDenylist;
+import dekra.user.security.JWTTokenIssuer;
+import dekra.user.security.RateLimitProperties;
+import dekra.user.services.PasswordHashingService;
+import dekra.user.services.impl.PasswordHashingServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Same access rules and rate limits as the servlet app, stateless, with the JWT filter in place
+ * of the authentication mechanisms. Password hashing reuses the bounded hashing pool of the servlet
+ * app, BCrypt never runs on the event loop.
+ */
+@Configuration
+@EnableWebFluxSecurity
+public class ReactiveSecurityConfiguration {
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, ReactiveJWTService jwtService,
+                                                         RateLimitProperties rateLimitProperties, ObjectMapper objectMapper,
+                                                         MeterRegistry meterRegistry) throws JsonProcessingException {
+        if (rateLimitProperties.isEnabled()) {
+            // first of all, requests over their limit are not even authenticated
+            http.addFilterBefore(new ReactiveRateLimitFilter(rateLimitProperties, objectMapper, meterRegistry), SecurityWebFiltersOrder.AUTHENTICATION);
+        }
+        return http
+                .csrf().disable()
+                .httpBasic().disable()
+                .formLogin().disable()
+                .logout().disable()
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .exceptionHandling()
+                .authenticationEntryPoint((exchange, e) -> Mono.fromRunnable(() -> exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN)))
+                .and()
+                .addFilterAt(new ReactiveJWTAuthenticationFilter(jwtService), SecurityWebFiltersOrder.AUTHENTICATION)
+                .authorizeExchange()
+                .pathMatchers(HttpMethod.POST, "/auth/logout").authenticated()
+                .pathMatchers(HttpMethod.POST, "/auth/**").permitAll()
+                .pathMatchers(HttpMethod.POST, "/api/user/batch").authenticated()
+                .pathMatchers(HttpMethod.GET, "/api/**").permitAll()
+                .pathMatchers(HttpMethod.DELETE, "/api/**").authenticated()
+                .pathMatchers(HttpMethod.PATCH, "/api/**").authenticated()
+                .anyExchange().permitAll()
+                .and()
+                .build();
+    }
+
+    @Bean
+    public JWTAuthenticationCache authenticationCache(@Value("${security.jwt.cache.max-size}") int maxSize) {
+        return new JWTAuthenticationCache(maxSize);
+    }
+
+    @Bean
+    public RateLimitProperties rateLimitProperties() {
+        return new RateLimitProperties();
+    }
+
+    @Bean
+    public JWTDenylist denylist(@Value("${security.jwt.revocations.expected-size}") int expectedSize,
+                                @Value("${security.jwt.revocations.file:}") String file) {
+        return new JWTDenylist(expectedSize, file);
+    }
+
+    @Bean
+    public JWTTokenIssuer tokenIssuer(@Value("${security.jwt.secret}") String secret, @Value("${security.jwt.ttl}") Duration ttl,
+                                      @Value("${security.jwt.issuer:}") String issuer) {
+        return new JWTTokenIssuer(secret, ttl, issuer);
+    }
+
+    @Bean
+    public PasswordEncoder passwordEncoder(@Value("${security.bcrypt.strength}") int strength) {
+        return new BCryptPasswordEncoder(strength);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashingExecutor(@Value("${security.bcrypt.pool-size:0}") int poolSize,
+                                                          @Value("${security.bcrypt.queue-capacity}") int queueCapacity) {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("bcrypt-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+    @Bean
+    public PasswordHashingService passwordHashingService(PasswordEncoder passwordEncoder,
+                                                         @Qualifier("passwordHashingExecutor") ThreadPoolTaskExecutor executor) {
+        return new PasswordHashingServiceImpl(passwordEncoder, executor);
+    }
+}
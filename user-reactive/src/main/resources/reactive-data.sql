@@ -0,0 +1 @@
+INSERT INTO USER (ID, ACTIVE, AGE, CREATION_DATE, EMAIL, LAST_LOGGING, NAME, PASSWORD, SURNAME, USER_NAME, VERSION) VALUES (NEXT VALUE FOR USER_SEQ, true, 22, NULL, 'myemail@user.com', NULL, 'myname', 'admin', 'mysurname', 'admin', 0);
@@ -0,0 +1,16 @@
+CREATE SEQUENCE IF NOT EXISTS USER_SEQ START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE IF NOT EXISTS USER (
+    ID BIGINT NOT NULL PRIMARY KEY,
+    ACTIVE BOOLEAN NOT NULL,
+    AGE INTEGER,
+    CREATION_DATE TIMESTAMP,
+    EMAIL VARCHAR(50),
+    LAST_LOGGING TIMESTAMP,
+    NAME VARCHAR(255),
+    PASSWORD VARCHAR(255) NOT NULL,
+    SURNAME VARCHAR(255),
+    USER_NAME VARCHAR(255) NOT NULL,
+    VERSION BIGINT NOT NULL,
+    CONSTRAINT UK_USER_USER_NAME UNIQUE (USER_NAME)
+);
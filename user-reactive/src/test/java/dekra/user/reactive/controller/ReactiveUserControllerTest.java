@@ -0,0 +1,245 @@
+package dekra.user.reactive.controller;
+
+import dekra.user.model.entities.LoginResponse;
+import dekra.user.model.entities.UserPage;
+import dekra.user.model.entities.UserSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The user API of the reactive app through its whole stack: security filters, controllers and
+ * R2DBC. A database of its own, every test creates the users it needs, and no rate limits so
+ * the tests can log in as often as they like
+ */
+@SpringBootTest(properties = {"spring.config.name=user-reactive",
+        "spring.r2dbc.url=r2dbc:h2:mem:///controller-test?options=DB_CLOSE_DELAY=-1",
+        "security.rate-limit.enabled=false"})
+@AutoConfigureWebTestClient
+class ReactiveUserControllerTest {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final AtomicLong USERS = new AtomicLong();
+
+    @Autowired
+    private WebTestClient client;
+
+    @Test
+    void loginAnswersTheTokenOfTheUser() {
+        UserSummary user = create("login");
+
+        LoginResponse login = login(user.getUserName(), "password");
+
+        assertThat(login.getId()).isEqualTo(user.getId());
+        assertThat(login.getToken()).startsWith("Bearer ");
+        assertThat(login.getLastLogging()).isNotNull();
+    }
+
+    @Test
+    void loginWithAWrongPasswordIsRejected() {
+        UserSummary user = create("wrong");
+
+        client.post().uri("/auth/login?username={username}&password=other", user.getUserName()).exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.errors[0]").isEqualTo("Password not valid");
+        client.post().uri("/auth/login?username=nobody&password=password").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void createdUserIsAnsweredWithoutItsPassword() {
+        client.post().uri("/api/user/create?username=created&password=password&name=Name&age=30&active=true").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isNumber()
+                .jsonPath("$.userName").isEqualTo("created")
+                .jsonPath("$.name").isEqualTo("Name")
+                .jsonPath("$.active").isEqualTo(true)
+                .jsonPath("$.password").doesNotExist();
+    }
+
+    @Test
+    void invalidOrExistingUserIsNotCreated() {
+        client.post().uri("/api/user/create?username=invalid&password=x&age=3").exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$[*].error").value(errors -> assertThat(errors).asList().containsExactlyInAnyOrder("password", "age"));
+
+        UserSummary user = create("existing");
+        client.post().uri("/api/user/create?username={username}&password=password", user.getUserName()).exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.errors[0]").isEqualTo("Username already exists");
+    }
+
+    @Test
+    void listIsPagedWithContinuationTokens() {
+        String surname = "Paged" + USERS.incrementAndGet();
+        for (int i = 0; i < 3; i++) {
+            create("paged", surname);
+        }
+
+        UserPage first = list("/api/user/list?surname={surname}&sort=id,desc&size=2", surname);
+        UserPage second = list("/api/user/list?surname={surname}&sort=id,desc&size=2&next={next}", surname, first.getNext());
+
+        assertThat(first.getUsers()).hasSize(2).allMatch(user -> user.getSurname().equals(surname));
+        assertThat(first.getNext()).isNotNull();
+        assertThat(second.getUsers()).hasSize(1);
+        assertThat(second.getNext()).isNull();
+        assertThat(first.getUsers().get(0).getId()).isGreaterThan(first.getUsers().get(1).getId());
+        assertThat(first.getUsers().get(1).getId()).isGreaterThan(second.getUsers().get(0).getId());
+    }
+
+    @Test
+    void invalidListParametersAreRejected() {
+        client.get().uri("/api/user/list?sort=password").exchange().expectStatus().isBadRequest();
+        client.get().uri("/api/user/list?minAge=old").exchange().expectStatus().isBadRequest();
+        client.get().uri("/api/user/list?size=0").exchange().expectStatus().isBadRequest();
+        client.get().uri("/api/user/list?next=invalid").exchange().expectStatus().isBadRequest();
+        client.get().uri("/api/user/list?sort=password").accept(NDJSON).exchange()
+                .expectStatus().isBadRequest()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void listIsStreamedAsNewlineDelimitedJson() {
+        String surname = "Streamed" + USERS.incrementAndGet();
+        for (int i = 0; i < 3; i++) {
+            create("streamed", surname);
+        }
+
+        List<UserSummary> streamed = client.get().uri("/api/user/list?surname={surname}&sort=id,desc", surname).accept(NDJSON).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(NDJSON)
+                .returnResult(UserSummary.class).getResponseBody().collectList().block();
+
+        assertThat(streamed).hasSize(3).allMatch(user -> user.getSurname().equals(surname));
+        assertThat(streamed.get(0).getId()).isGreaterThan(streamed.get(2).getId());
+    }
+
+    @Test
+    void protectedRoutesNeedAToken() {
+        UserSummary user = create("protected");
+
+        client.delete().uri("/api/user/delete/{id}", user.getId()).exchange().expectStatus().isForbidden();
+        client.patch().uri("/api/user/update/{id}?name=Other", user.getId()).exchange().expectStatus().isForbidden();
+        client.post().uri("/auth/logout").exchange().expectStatus().isForbidden();
+        client.delete().uri("/api/user/delete/{id}", user.getId()).header(HttpHeaders.AUTHORIZATION, "Bearer invalid").exchange()
+                .expectStatus().isForbidden();
+
+        client.delete().uri("/api/user/delete/{id}", user.getId()).header(HttpHeaders.AUTHORIZATION, token()).exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void tokenIsRejectedAfterLogout() {
+        UserSummary user = create("logout");
+        String token = token();
+
+        client.post().uri("/auth/logout").header(HttpHeaders.AUTHORIZATION, token).exchange().expectStatus().isOk();
+
+        client.delete().uri("/api/user/delete/{id}", user.getId()).header(HttpHeaders.AUTHORIZATION, token).exchange()
+                .expectStatus().isForbidden();
+        client.post().uri("/auth/logout").header(HttpHeaders.AUTHORIZATION, token).exchange().expectStatus().isForbidden();
+    }
+
+    @Test
+    void unchangedUserIsNotSentAgain() {
+        UserSummary user = create("conditional");
+
+        String etag = client.get().uri("/api/user/{id}", user.getId()).exchange()
+                .expectStatus().isOk()
+                .expectHeader().cacheControl(CacheControl.noCache())
+                .expectBody().jsonPath("$.userName").isEqualTo(user.getUserName())
+                .returnResult().getResponseHeaders().getETag();
+
+        assertThat(etag).isEqualTo("\"0\"");
+        client.get().uri("/api/user/{id}", user.getId()).header(HttpHeaders.IF_NONE_MATCH, etag).exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+                .expectBody().isEmpty();
+        client.get().uri("/api/user/{id}", user.getId()).header(HttpHeaders.IF_NONE_MATCH, "W/" + etag).exchange()
+                .expectStatus().isNotModified();
+        client.get().uri("/api/user/{id}", user.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"41\"").exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void missingUserIsNotFound() {
+        client.get().uri("/api/user/{id}", Long.MAX_VALUE).exchange()
+                .expectStatus().isNotFound()
+                .expectBody().jsonPath("$.errors[0]").isEqualTo("User with id: " + Long.MAX_VALUE + " can't be found");
+    }
+
+    @Test
+    void updateIsConditionalOnTheETag() {
+        UserSummary user = create("update");
+        String token = token();
+
+        String etag = client.patch().uri("/api/user/update/{id}?name=First", user.getId())
+                .header(HttpHeaders.AUTHORIZATION, token).header(HttpHeaders.IF_MATCH, "\"0\"").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.name").isEqualTo("First")
+                .returnResult().getResponseHeaders().getETag();
+
+        assertThat(etag).isEqualTo("\"1\"");
+        // the change was made against the version the client had
+        client.patch().uri("/api/user/update/{id}?name=Second", user.getId())
+                .header(HttpHeaders.AUTHORIZATION, token).header(HttpHeaders.IF_MATCH, "\"0\"").exchange()
+                .expectStatus().isEqualTo(412);
+        client.patch().uri("/api/user/update/{id}?name=Second", user.getId())
+                .header(HttpHeaders.AUTHORIZATION, token).header(HttpHeaders.IF_MATCH, "W/" + etag).exchange()
+                .expectStatus().isEqualTo(412);
+        client.get().uri("/api/user/{id}", user.getId()).exchange()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+                .expectBody().jsonPath("$.name").isEqualTo("First");
+
+        client.patch().uri("/api/user/update/{id}?name=Second", user.getId())
+                .header(HttpHeaders.AUTHORIZATION, token).header(HttpHeaders.IF_MATCH, "*").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"2\"");
+        // a missing user is not a changed one
+        client.patch().uri("/api/user/update/{id}?name=Third", Long.MAX_VALUE)
+                .header(HttpHeaders.AUTHORIZATION, token).header(HttpHeaders.IF_MATCH, etag).exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    private UserSummary create(String prefix) {
+        return create(prefix, "Surname");
+    }
+
+    private UserSummary create(String prefix, String surname) {
+        return client.post().uri("/api/user/create?username={username}&password=password&surname={surname}&age=30",
+                        prefix + USERS.incrementAndGet(), surname).exchange()
+                .expectStatus().isOk()
+                .expectBody(UserSummary.class).returnResult().getResponseBody();
+    }
+
+    private LoginResponse login(String username, String password) {
+        return client.post().uri("/auth/login?username={username}&password={password}", username, password).exchange()
+                .expectStatus().isOk()
+                .expectBody(LoginResponse.class).returnResult().getResponseBody();
+    }
+
+    /**
+     * Authorization header of a new login of the admin
+     */
+    private String token() {
+        return login("admin", "admin").getToken();
+    }
+
+    private UserPage list(String uri, Object... variables) {
+        return client.get().uri(uri, variables).exchange()
+                .expectStatus().isOk()
+                .expectBody(UserPage.class).returnResult().getResponseBody();
+    }
+}
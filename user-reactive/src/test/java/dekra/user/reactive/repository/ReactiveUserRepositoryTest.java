@@ -0,0 +1,155 @@
+package dekra.user.reactive.repository;
+
+import dekra.user.controller.ContinuationToken;
+import dekra.user.model.entities.User;
+import dekra.user.model.entities.UserCursor;
+import dekra.user.model.entities.UserFilter;
+import dekra.user.model.entities.UserSort;
+import dekra.user.model.entities.UserSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Keyset pages and filters of the user list, against the order and the users the servlet app
+ * would list. A database of its own, the users are replaced before each test
+ */
+@SpringBootTest(properties = {"spring.config.name=user-reactive",
+        "spring.r2dbc.url=r2dbc:h2:mem:///repository-test?options=DB_CLOSE_DELAY=-1"})
+class ReactiveUserRepositoryTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2021, 9, 1, 10, 0);
+
+    @Autowired
+    private ReactiveUserRepository userRepository;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    private List<UserSummary> users;
+
+    @BeforeEach
+    void createUsers() {
+        databaseClient.sql("DELETE FROM USER").fetch().rowsUpdated().block();
+        // ties and missing values in every sort field but the id
+        List<User> created = new ArrayList<>();
+        created.add(user("b", 30, DAY, true));
+        created.add(user(null, null, null, false));
+        created.add(user("a", 20, DAY.plusDays(1), true));
+        created.add(user("b", 30, DAY, false));
+        created.add(user("c", null, null, true));
+        created.add(user(null, 40, DAY.plusDays(1), true));
+        created.add(user("a_b", 20, DAY, true));
+        created.add(user("axb", 30, null, false));
+        created.add(user("c", null, DAY.minusDays(1), true));
+        users = Flux.fromIterable(created).concatMap(userRepository::insert).map(UserSummary::of).collectList().block();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"id", "id,desc", "name", "name,desc", "surname", "surname,desc", "age", "age,desc",
+            "creationDate", "creationDate,desc", "lastLogging", "lastLogging,desc"})
+    void pagesFollowTheSortWithTiesAndMissingValues(String sortParameter) {
+        UserSort sort = UserSort.parse(sortParameter);
+        List<Long> expected = ids(expectedOrder(users, sort));
+        for (int pageSize = 1; pageSize <= users.size(); pageSize++) {
+            assertThat(ids(pageThrough(null, sort, pageSize))).as("%s in pages of %s", sort, pageSize)
+                    .containsExactlyElementsOf(expected);
+        }
+        assertThat(ids(userRepository.streamSummaries(null, sort).collectList().block())).as("%s streamed", sort)
+                .containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void filtersAreCombined() {
+        UserFilter filter = new UserFilter();
+        filter.setActive(true);
+        filter.setMinAge(20);
+        filter.setMaxAge(30);
+        filter.setCreatedFrom(DAY);
+        filter.setCreatedTo(DAY.plusDays(1));
+
+        assertThat(ids(pageThrough(filter, UserSort.parse("age,desc"), 2))).containsExactlyElementsOf(ids(expectedOrder(
+                users.stream().filter(user -> user.isActive() && user.getAge() != null && user.getAge() >= 20 && user.getAge() <= 30
+                        && DAY.equals(user.getCreationDate())).collect(Collectors.toList()), UserSort.parse("age,desc"))))
+                .isNotEmpty();
+    }
+
+    @Test
+    void prefixesAreMatchedLiterally() {
+        UserFilter filter = new UserFilter();
+        filter.setName("a_");
+
+        assertThat(userRepository.streamSummaries(filter, UserSort.DEFAULT).map(UserSummary::getName).collectList().block())
+                .containsExactly("a_b");
+    }
+
+    @Test
+    void lastLoggingWindowExcludesItsEnd() {
+        UserFilter filter = new UserFilter();
+        filter.setLastLoggingFrom(DAY.plusHours(1));
+        filter.setLastLoggingTo(DAY.plusDays(1).plusHours(1));
+
+        assertThat(userRepository.streamSummaries(filter, UserSort.DEFAULT).map(UserSummary::getLastLogging).collectList().block())
+                .hasSize(3).containsOnly(DAY.plusHours(1));
+    }
+
+    /**
+     * Read every page of the list, each one resumed with the token of the previous one
+     */
+    private List<UserSummary> pageThrough(UserFilter filter, UserSort sort, int pageSize) {
+        List<UserSummary> listed = new ArrayList<>();
+        UserCursor after = null;
+        while (true) {
+            // a wrong position would list some users again and again
+            assertThat(listed).as("%s listed more users than there are", sort).hasSizeLessThanOrEqualTo(users.size());
+            List<UserSummary> page = userRepository.findSummaries(filter, sort, after, pageSize + 1).collectList().block();
+            if (page.size() <= pageSize) {
+                listed.addAll(page);
+                return listed;
+            }
+            listed.addAll(page.subList(0, pageSize));
+            after = ContinuationToken.decode(ContinuationToken.encode(sort, page.get(pageSize - 1)), sort);
+        }
+    }
+
+    /**
+     * Users in the order of a sort: ascending puts the users without the field first, the id
+     * breaks ties, and descending is the exact reverse
+     */
+    @SuppressWarnings("unchecked")
+    private static List<UserSummary> expectedOrder(List<UserSummary> users, UserSort sort) {
+        Comparator<UserSummary> byField = Comparator.comparing(user -> (Comparable<Object>) sort.valueOf(user),
+                Comparator.nullsFirst(Comparator.naturalOrder()));
+        List<UserSummary> ordered = users.stream()
+                .sorted(byField.thenComparing(UserSummary::getId))
+                .collect(Collectors.toList());
+        if (!sort.isAscending()) {
+            Collections.reverse(ordered);
+        }
+        return ordered;
+    }
+
+    private static List<Long> ids(List<UserSummary> users) {
+        return users.stream().map(UserSummary::getId).collect(Collectors.toList());
+    }
+
+    private static User user(String name, Integer age, LocalDateTime creationDate, boolean active) {
+        User user = new User("keyset" + System.nanoTime(), "password", name, "Keyset", "keyset@user.com", active, age, creationDate);
+        user.setLastLogging(creationDate == null ? null : creationDate.plusHours(1));
+        return user;
+    }
+}
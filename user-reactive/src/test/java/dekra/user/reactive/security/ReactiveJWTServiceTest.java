@@ -0,0 +1,86 @@
+package dekra.user.reactive.security;
+
+import dekra.user.security.JWTAuthenticationCache;
+import dekra.user.security.JWTDenylist;
+import dekra.user.security.JWTTokenIssuer;
+import io.jsonwebtoken.IncorrectClaimException;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MissingClaimException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tokens read by the reactive app: invalid ones throw, and the filter answers them 403
+ */
+class ReactiveJWTServiceTest {
+
+    private static final String SECRET = "mySecretKey";
+
+    private static final String ISSUER = "user-reactive";
+
+    private final ReactiveJWTService jwtService = new ReactiveJWTService(SECRET, ISSUER,
+            new JWTTokenIssuer(SECRET, Duration.ofMinutes(10), ISSUER), new JWTAuthenticationCache(100), new JWTDenylist(100, ""));
+
+    @Test
+    void issuedTokenIsAuthenticated() {
+        Authentication authentication = authenticate(jwtService.issue("admin"));
+
+        assertThat(authentication.getName()).isEqualTo("admin");
+        assertThat(authentication.getAuthorities()).extracting(Object::toString).containsExactly("ROLE_USER");
+    }
+
+    @Test
+    void tokenWithoutExpirationIsRejected() {
+        assertThatThrownBy(() -> authenticate(token().setExpiration(null))).isInstanceOf(MissingClaimException.class);
+    }
+
+    @Test
+    void tokenWithoutIdIsRejected() {
+        assertThatThrownBy(() -> authenticate(token().setId(null))).isInstanceOf(MissingClaimException.class);
+    }
+
+    @Test
+    void tokenOfAnotherIssuerIsRejected() {
+        assertThatThrownBy(() -> authenticate(token().setIssuer("user"))).isInstanceOf(IncorrectClaimException.class);
+    }
+
+    @Test
+    void revokedTokenIsNotAuthenticated() {
+        String token = jwtService.issue("admin");
+
+        jwtService.revoke(authenticate(token));
+
+        assertThat(authenticate(token)).isNull();
+    }
+
+    /**
+     * A valid token, to be spoiled by each test
+     */
+    private static JwtBuilder token() {
+        return Jwts.builder()
+                .setId("token-id")
+                .setIssuer(ISSUER)
+                .setSubject("admin")
+                .claim("authorities", Collections.singletonList("ROLE_USER"))
+                .setExpiration(new Date(System.currentTimeMillis() + 600000))
+                .signWith(SignatureAlgorithm.HS512, SECRET.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Authentication authenticate(JwtBuilder token) {
+        return jwtService.authenticate(token.compact());
+    }
+
+    private Authentication authenticate(String token) {
+        return jwtService.authenticate(token.substring(JWTTokenIssuer.PREFIX.length()));
+    }
+}
@@ -0,0 +1,85 @@
+package dekra.user.reactive.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dekra.user.security.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveRateLimitFilterTest {
+
+    private ReactiveRateLimitFilter filter;
+
+    @BeforeEach
+    void createFilter() throws Exception {
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setCapacity(1);
+        limit.setRefillPerSecond(0.2);
+        RateLimitProperties.Endpoint login = new RateLimitProperties.Endpoint();
+        login.setMethod(HttpMethod.POST);
+        login.setPath("/auth/login");
+        login.setIp(limit);
+        login.setUsername(limit);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getEndpoints().put("login", login);
+        filter = new ReactiveRateLimitFilter(properties, new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/auth/login", "/auth/login/", "//auth//login", "/auth/login;x=1", "/auth;x=1/login;y=2/",
+            "/auth/%6Cogin", "/%61uth/login;x=%31"})
+    void everySpellingOfThePathIsLimited(String path) {
+        assertThat(filter(HttpMethod.POST, "/auth/login", "127.0.0.1", null).getStatusCode()).isNull();
+
+        MockServerHttpResponse response = filter(HttpMethod.POST, path, "127.0.0.1", null);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("5");
+    }
+
+    @Test
+    void usernameIsLimitedFromAnyClient() {
+        assertThat(filter(HttpMethod.POST, "/auth/login", "10.0.0.1", "admin").getStatusCode()).isNull();
+
+        assertThat(filter(HttpMethod.POST, "/auth/login;x=1", "10.0.0.2", "admin").getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(filter(HttpMethod.POST, "/auth/login;x=1", "10.0.0.3", "other").getStatusCode()).isNull();
+    }
+
+    @Test
+    void otherMethodsAndPathsAreNotLimited() {
+        filter(HttpMethod.POST, "/auth/login", "127.0.0.1", null);
+
+        assertThat(filter(HttpMethod.GET, "/auth/login", "127.0.0.1", null).getStatusCode()).isNull();
+        assertThat(filter(HttpMethod.POST, "/auth/logout", "127.0.0.1", null).getStatusCode()).isNull();
+        assertThat(filter(HttpMethod.POST, "/auth/login/more", "127.0.0.1", null).getStatusCode()).isNull();
+        assertThat(filter(HttpMethod.POST, "/auth/login%2Fmore", "127.0.0.1", null).getStatusCode()).isNull();
+    }
+
+    /**
+     * Run a request through the filter, the status of the response is left unset when the
+     * request is allowed
+     */
+    private MockServerHttpResponse filter(HttpMethod method, String path, String remoteAddress, String username) {
+        // an uri, the path is sent as it is, not encoded again
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest
+                .method(method, URI.create("http://localhost" + path + (username == null ? "" : "?username=" + username)))
+                .remoteAddress(new InetSocketAddress(remoteAddress, 50000));
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, filtered -> Mono.empty()).block();
+        return exchange.getResponse();
+    }
+}
@@ -1,23 +1,88 @@
 package dekra.user.aop;
 
+import lombok.AllArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Log4j2
 @Aspect
 @Component
 public class LoggingAspect {
 
+    private static final String MASK = "******";
+
+    /**
+     * Parameters masked even if they are not annotated with {@link Sensitive}
+     */
+    private static final Set<String> SENSITIVE_NAMES = Set.of("password", "pwd", "token", "secret");
+
+    private final Map<Method, MethodMetadata> metadata = new ConcurrentHashMap<>();
+
+    /**
+     * Log the call to a request method as a key=value event. Nothing is built when INFO is off
+     * @param joinPoint, the method call
+     */
     @Before("@annotation(dekra.user.aop.LogRequest)")
     public void logRequestExecution(JoinPoint joinPoint) {
-        String method = joinPoint.getSignature().getName();
-        String params = Arrays.toString(joinPoint.getArgs());
-        log.info("Method [" + method + "] gets called with parameters " + params);
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        MethodMetadata method = metadata.computeIfAbsent(signature.getMethod(), key -> describe(signature));
+        log.info("event=request method={} params={}", method.name, method.format(joinPoint.getArgs()));
+    }
+
+    private static MethodMetadata describe(MethodSignature signature) {
+        String[] names = signature.getParameterNames();
+        Annotation[][] annotations = signature.getMethod().getParameterAnnotations();
+        int count = annotations.length;
+        if (names == null || names.length != count) {
+            names = new String[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = "arg" + i;
+            }
+        }
+        boolean[] sensitive = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            sensitive[i] = SENSITIVE_NAMES.contains(names[i])
+                    || Arrays.stream(annotations[i]).anyMatch(annotation -> annotation instanceof Sensitive);
+        }
+        return new MethodMetadata(signature.getName(), names, sensitive);
+    }
+
+    /**
+     * What is needed to log the calls to a method, worked out on its first call
+     */
+    @AllArgsConstructor
+    private static final class MethodMetadata {
+
+        private final String name;
+
+        private final String[] parameterNames;
+
+        private final boolean[] sensitive;
+
+        private String format(Object[] args) {
+            StringBuilder params = new StringBuilder(16 * args.length + 2).append('{');
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) {
+                    params.append(", ");
+                }
+                params.append(parameterNames[i]).append('=').append(sensitive[i] ? MASK : args[i]);
+            }
+            return params.append('}').toString();
+        }
     }
 
-}
\ No newline at end of file
+}
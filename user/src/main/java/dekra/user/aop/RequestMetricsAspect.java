@@ -0,0 +1,146 @@
+package dekra.user.aop;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency, errors and requests in flight of the {@link LogRequest} methods, published as
+ * user.request (timer with percentiles and histogram buckets), user.request.errors and
+ * user.request.active, all tagged with the method name. Asynchronous methods are measured
+ * until the returned stage completes, streamed responses until their body has been written.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class RequestMetricsAspect {
+
+    private static final String REQUEST = "user.request";
+
+    private final MeterRegistry registry;
+
+    private final Map<Method, RequestMeters> meters = new ConcurrentHashMap<>();
+
+    @Around("@annotation(dekra.user.aop.LogRequest)")
+    public Object timeRequest(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        RequestMeters requestMeters = meters.computeIfAbsent(method, key -> new RequestMeters(key.getName()));
+        requestMeters.active.incrementAndGet();
+        Timer.Sample sample = Timer.start(registry);
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            requestMeters.stop(sample, null, e);
+            throw e;
+        }
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((value, error) -> requestMeters.stop(sample, value, error));
+        } else if (result instanceof ResponseEntity && ((ResponseEntity<?>) result).getBody() instanceof StreamingResponseBody) {
+            return timed((ResponseEntity<?>) result, requestMeters, sample);
+        } else {
+            requestMeters.stop(sample, result, null);
+        }
+        return result;
+    }
+
+    /**
+     * Wrap a streamed response so that it is measured until its body has been written, the method
+     * only returns the body to write
+     * @param response, the response returned by the method
+     * @param requestMeters, the meters of the method
+     * @param sample, the sample started with the request
+     * @return the same response, with a measured body
+     */
+    private static ResponseEntity<StreamingResponseBody> timed(ResponseEntity<?> response, RequestMeters requestMeters, Timer.Sample sample) {
+        StreamingResponseBody body = (StreamingResponseBody) response.getBody();
+        StreamingResponseBody timedBody = outputStream -> {
+            try {
+                body.writeTo(outputStream);
+            } catch (IOException | RuntimeException | Error e) {
+                requestMeters.stop(sample, null, e);
+                throw e;
+            }
+            requestMeters.stop(sample, response, null);
+        };
+        return new ResponseEntity<>(timedBody, response.getHeaders(), response.getStatusCode());
+    }
+
+    /**
+     * Status of a finished request, the exception name when it failed
+     * @param result, the value returned by the method
+     * @param error, the exception thrown by the method, null if it returned
+     * @return the status, null if the request succeeded
+     */
+    private static String errorStatus(Object result, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            return cause.getClass().getSimpleName();
+        }
+        if (result instanceof ResponseEntity && ((ResponseEntity<?>) result).getStatusCodeValue() >= 400) {
+            return String.valueOf(((ResponseEntity<?>) result).getStatusCodeValue());
+        }
+        return null;
+    }
+
+    /**
+     * Meters of a method, registered on its first call
+     */
+    private final class RequestMeters {
+
+        private final String method;
+
+        private final Timer timer;
+
+        private final AtomicInteger active = new AtomicInteger();
+
+        private final Map<String, Counter> errors = new ConcurrentHashMap<>();
+
+        private RequestMeters(String method) {
+            this.method = method;
+            this.timer = Timer.builder(REQUEST)
+                    .description("Latency of the requests")
+                    .tag("method", method)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry);
+            Gauge.builder(REQUEST + ".active", active, AtomicInteger::get)
+                    .description("Requests in progress")
+                    .tag("method", method)
+                    .register(registry);
+        }
+
+        private void stop(Timer.Sample sample, Object result, Throwable error) {
+            sample.stop(timer);
+            active.decrementAndGet();
+            String status = errorStatus(result, error);
+            if (status != null) {
+                errors.computeIfAbsent(status, key -> Counter.builder(REQUEST + ".errors")
+                        .description("Requests answered with an error status or failed with an exception")
+                        .tag("method", method)
+                        .tag("status", key)
+                        .register(registry)).increment();
+            }
+        }
+    }
+}
@@ -1,25 +1,32 @@
 package dekra.user.controller;
 
 
+import dekra.user.aop.LogRequest;
+import dekra.user.aop.Sensitive;
 import dekra.user.exception.ErrorMessage;
+import dekra.user.model.entities.LoginResponse;
 import dekra.user.model.entities.User;
+import dekra.user.security.JWTDenylist;
+import dekra.user.security.JWTTokenDetails;
+import dekra.user.security.JWTTokenIssuer;
+import dekra.user.services.PasswordHashingService;
+import dekra.user.services.RequestExecutionService;
 import dekra.user.services.UserService;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -27,9 +34,8 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.Date;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Log4j2
 @RequiredArgsConstructor
@@ -40,60 +46,109 @@ public class AuthController {
 
     private final UserService userService;
     private final UserDetailsService userDetailsService;
-    @Autowired
-    private PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final RequestExecutionService requestExecutionService;
+    private final JWTTokenIssuer tokenIssuer;
+    private final JWTDenylist denylist;
 
+    @LogRequest
     @PostMapping("/login")
     @ApiOperation(value = "Log user", notes = "This method logs an user into the application and provides authorization.")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "OK. User log in successfully", response = User.class ),
-            @ApiResponse(code = 400, message = "Bad Request. User can´t be logged", response = String.class) })
-    public ResponseEntity login(@RequestParam("username") String username, @RequestParam("password") String pwd) {
+            @ApiResponse(code = 200, message = "OK. User log in successfully", response = LoginResponse.class ),
+            @ApiResponse(code = 400, message = "Bad Request. User can´t be logged", response = String.class),
+            @ApiResponse(code = 503, message = "Service unavailable. Too many logins in progress, retry later", response = String.class) })
+    public CompletableFuture<ResponseEntity> login(@RequestParam("username") String username, @Sensitive @RequestParam("password") String pwd) {
 
         try {
-            User user = (User) userDetailsService.loadUserByUsername(username);
-            if(passwordEncoder.matches(pwd, user.getPassword()) || user.getPassword().equals(pwd))  {
-                String token = getJWTToken(username);
+            return requestExecutionService.execute(() -> (User) userDetailsService.loadUserByUsername(username))
+                    .thenCompose(user -> checkPassword(user, pwd))
+                    .exceptionally(e -> loginFailed(e, username));
+        } catch (TaskRejectedException e) {
+            log.error("Database pool saturated, login rejected");
+            return CompletableFuture.completedFuture(serverBusy());
+        }
+
+    }
+
+    @LogRequest
+    @PostMapping("/logout")
+    @ApiOperation(value = "Log out user", notes = "This method revokes the token of the request, it is not accepted anymore even if it has not expired. Needs authorization to run it")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK. User logged out successfully", response = String.class ),
+            @ApiResponse(code = 403, message = "Forbidden. Need to login (authorize) first", response = String.class) })
+    @Operation(security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity logout(Authentication authentication) {
+        JWTTokenDetails token = (JWTTokenDetails) authentication.getDetails();
+        denylist.revoke(token.getId(), token.getExpiration());
+        return new ResponseEntity<>(String.format("User - %s - has been logged out successfully", authentication.getName()), HttpStatus.OK);
+    }
+
+    /**
+     * Check the password of an user and log it in
+     * @param user, the user
+     * @param pwd, the password sent
+     * @return the user id and its token, or a bad request if the password does not match
+     */
+    private CompletableFuture<ResponseEntity> checkPassword(User user, String pwd) {
+        String storedPassword = user.getPassword();
+        return passwordHashingService.matches(pwd, storedPassword).thenCompose(matches -> {
+            if (matches || storedPassword.equals(pwd)) {
+                String token = tokenIssuer.issue(user.getUsername());
                 user.setLastLogging(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
                 user.setToken(token);
-                userService.saveUser(user);
-                return new ResponseEntity<>(user, HttpStatus.OK);
+                userService.recordLogin(user.getId(), user.getLastLogging());
+                if (!passwordHashingService.needsRehash(storedPassword)) {
+                    return CompletableFuture.completedFuture(loggedIn(user));
+                }
+                // the stored hash is plain text or uses another strength, upgrade it transparently
+                try {
+                    return passwordHashingService.encode(pwd).thenCompose(hash -> requestExecutionService.execute(() -> {
+                        userService.updatePassword(user.getId(), hash);
+                        user.setPassword(hash);
+                        return loggedIn(user);
+                    })).exceptionally(e -> {
+                        // the password was right: if the upgrade fails, on a saturated pool for instance, it is left for a later login
+                        log.warn("Password of user {} not upgraded: {}", user.getId(), e.getLocalizedMessage());
+                        return loggedIn(user);
+                    });
+                } catch (TaskRejectedException e) {
+                    // pool saturated, the upgrade is left for a later login
+                    return CompletableFuture.completedFuture(loggedIn(user));
+                }
             } else {
                 log.error("Password not valid");
-                return new ResponseEntity<>(new ErrorMessage("Password not valid"), HttpStatus.BAD_REQUEST);
+                return CompletableFuture.completedFuture(new ResponseEntity<>(new ErrorMessage("Password not valid"), HttpStatus.BAD_REQUEST));
             }
+        });
+    }
 
-        }catch (UsernameNotFoundException e) {
-             log.error(String.format("User - %s - does not exist" , username));
-             return new ResponseEntity<>(new ErrorMessage(String.format("User - %s - does not exist" , username)), HttpStatus.BAD_REQUEST);
+    private ResponseEntity loginFailed(Throwable e, String username) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof UsernameNotFoundException) {
+            log.error(String.format("User - %s - does not exist" , username));
+            return new ResponseEntity<>(new ErrorMessage(String.format("User - %s - does not exist" , username)), HttpStatus.BAD_REQUEST);
         }
-
+        if (cause instanceof TaskRejectedException) {
+            log.error("Password hashing or database pool saturated, login rejected");
+            return serverBusy();
+        }
+        throw new CompletionException(cause);
     }
 
+    private ResponseEntity serverBusy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1").body(new ErrorMessage("Server busy, try again later"));
+    }
 
     /**
-     * Get the jwt token of a determined user
-     * @param username, the username to assign the token
-     * @return the jwt token
+     * Answer the login of an user, its last login is recorded apart
+     * @param user, the user that has logged in
+     * @return the response with the user
      */
-    private String getJWTToken(String username) {
-        String secretKey = "mySecretKey";
-        List<GrantedAuthority> grantedAuthorities = AuthorityUtils
-                .commaSeparatedStringToAuthorityList("ROLE_USER");
+    private ResponseEntity loggedIn(User user) {
+        return new ResponseEntity<>(LoginResponse.of(user), HttpStatus.OK);
+    }
 
-        String token = Jwts
-                .builder()
-                .setId("sergioJWT")
-                .setSubject(username)
-                .claim("authorities",
-                        grantedAuthorities.stream()
-                                .map(GrantedAuthority::getAuthority)
-                                .collect(Collectors.toList()))
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + 600000))
-                .signWith(SignatureAlgorithm.HS512,
-                        secretKey.getBytes()).compact();
 
-        return "Bearer " + token;
-    }
 }
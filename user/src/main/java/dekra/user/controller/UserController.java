@@ -1,9 +1,30 @@
 package dekra.user.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import dekra.user.aop.LogRequest;
+import dekra.user.aop.Sensitive;
 import dekra.user.exception.ErrorMessage;
+import dekra.user.exception.InvalidUserException;
+import dekra.user.exception.UserAlreadyExistsException;
 import dekra.user.model.entities.User;
+import dekra.user.model.entities.UserCursor;
+import dekra.user.model.entities.UserFilter;
+import dekra.user.model.entities.UserImportRequest;
+import dekra.user.model.entities.UserImportResult;
+import dekra.user.model.entities.UserPage;
+import dekra.user.model.entities.UserSort;
+import dekra.user.model.entities.UserSummary;
 import dekra.user.model.entities.UserValidationError;
+import dekra.user.services.PasswordHashingService;
+import dekra.user.services.RequestExecutionService;
+import dekra.user.services.UserImportService;
 import dekra.user.services.UserService;
 import dekra.user.services.UserValidationService;
 import io.swagger.annotations.Api;
@@ -14,27 +35,38 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
-import org.apache.commons.lang3.StringUtils;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.annotation.PostConstruct;
 import javax.persistence.EntityNotFoundException;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 
 @RequiredArgsConstructor
@@ -44,52 +76,123 @@ import java.util.Map;
 @RequestMapping("/api/user")
 public class UserController {
 
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private static final String CSV_VALUE = "text/csv";
+
+    private static final MediaType CSV = MediaType.parseMediaType(CSV_VALUE);
+
+    private final CsvMapper csvMapper = CsvMapper.builder().enable(CsvParser.Feature.EMPTY_STRING_AS_NULL).build();
+
     private final UserService userService;
 
     private final UserValidationService userValidationService;
 
-    @Autowired
-    private PasswordEncoder passwordEncoder;
+    private final ObjectMapper objectMapper;
+
+    private final PasswordHashingService passwordHashingService;
+
+    private final UserImportService userImportService;
+
+    private final RequestExecutionService requestExecutionService;
+
+    @Value("${user.list.default-page-size}")
+    private int defaultPageSize;
+
+    @Value("${user.list.max-page-size}")
+    private int maxPageSize;
+
+    /**
+     * Writers of the streamed users and import results, built once with the serializer already resolved
+     */
+    private ObjectWriter summaryWriter;
+
+    private ObjectWriter importResultWriter;
+
+    @PostConstruct
+    void createWriters() {
+        summaryWriter = objectMapper.writerFor(UserSummary.class);
+        importResultWriter = objectMapper.writerFor(UserImportResult.class);
+    }
 
     @LogRequest
     @PostMapping(value = "/create")
     @ApiOperation(value = "Create user", notes = "This method creates a new user in database")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "OK. User created successfully", response = User.class ),
+            @ApiResponse(code = 200, message = "OK. User created successfully", response = UserSummary.class ),
             @ApiResponse(code = 400, message = "Bad Request. User couldn't be created", response = String.class),
-            @ApiResponse(code = 500, message = "Internal server error. User couldn't be created", response = String.class)})
-    public ResponseEntity createUser(
-            @RequestParam String username, @RequestParam String password, @RequestParam(required = false) String name,
+            @ApiResponse(code = 500, message = "Internal server error. User couldn't be created", response = String.class),
+            @ApiResponse(code = 503, message = "Service unavailable. Too many users being created, retry later", response = String.class)})
+    public CompletableFuture<ResponseEntity> createUser(
+            @RequestParam String username, @Sensitive @RequestParam String password, @RequestParam(required = false) String name,
                                     @RequestParam(required = false) String surname, @RequestParam(required = false) String email,
             @RequestParam(required = false ) boolean active, @RequestParam(required = false) Integer age) {
         try {
 
-            if (!userService.findByUserName(username)) {
-
-                //set values to user
-                User user = new User(username, password, name, surname, email, active, age, LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
-
-                //Perform validations
-                List<UserValidationError> validationErrors  = userValidationService.validateUser(user);
+            //set values to user
+            User user = new User(username, password, name, surname, email, active, age, LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
 
-                if (validationErrors.isEmpty()) {
-                    //encrypt password
-                    user.setPassword(passwordEncoder.encode(password));
+            //Perform validations
+            List<UserValidationError> validationErrors  = userValidationService.validateUser(user);
 
-                    // Save user on DDBB
-                    User userSaved = userService.saveUser(user);
-                    return new ResponseEntity<>(userSaved, HttpStatus.OK);
-                } else {
-                    return new ResponseEntity<>(validationErrors, HttpStatus.BAD_REQUEST);
-                }
+            if (validationErrors.isEmpty()) {
+                //encrypt password on the hashing pool, then insert user on DDBB, the unique username index rejects duplicates
+                return passwordHashingService.encode(password).thenCompose(hash -> {
+                    user.setPassword(hash);
+                    return requestExecutionService.execute(() -> (ResponseEntity) new ResponseEntity<>(UserSummary.of(userService.createUser(user)), HttpStatus.OK));
+                }).exceptionally(this::creationFailed);
             } else {
-                return new ResponseEntity<>(new ErrorMessage("Username already exists"), HttpStatus.BAD_REQUEST);
+                return CompletableFuture.completedFuture(new ResponseEntity<>(validationErrors, HttpStatus.BAD_REQUEST));
             }
+        } catch (TaskRejectedException e) {
+            log.error("Password hashing pool saturated, user creation rejected");
+            return CompletableFuture.completedFuture(serverBusy());
         } catch (Exception e) {
-            log.error("Error creating user", e.getLocalizedMessage());
-            return new ResponseEntity<>(new ErrorMessage(e.getLocalizedMessage()), HttpStatus.INTERNAL_SERVER_ERROR);
+            return CompletableFuture.completedFuture(creationFailed(e));
+        }
+
+    }
+
+    private ResponseEntity creationFailed(Throwable e) {
+        e = unwrap(e);
+        if (e instanceof UserAlreadyExistsException) {
+            return new ResponseEntity<>(new ErrorMessage("Username already exists"), HttpStatus.BAD_REQUEST);
+        }
+        if (e instanceof TaskRejectedException) {
+            log.error("Database pool saturated, user creation rejected");
+            return serverBusy();
         }
+        log.error("Error creating user", e.getLocalizedMessage());
+        return new ResponseEntity<>(new ErrorMessage(e.getLocalizedMessage()), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
 
+    @LogRequest
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE, CSV_VALUE}, produces = NDJSON_VALUE)
+    @ApiOperation(value = "Import users", notes = "This method creates users in bulk from a json array, newline delimited json or csv with header, and streams the result of each row as newline delimited json. Needs authorization to run it")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK. Import running, the result of each row is streamed once its chunk is done", response = UserImportResult.class, responseContainer = "List"),
+            @ApiResponse(code = 403, message = "Forbidden. Need to login (authorize) first", response = String.class) })
+    public ResponseEntity<StreamingResponseBody> importUsers(HttpServletRequest request) {
+        ObjectReader reader = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(CSV)
+                ? csvMapper.readerFor(UserImportRequest.class).with(CsvSchema.emptySchema().withHeader())
+                : objectMapper.readerFor(UserImportRequest.class);
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)
+                    .setRootValueSeparator(null);
+            // json arrays are read element by element, newline delimited json and csv row by row
+            try (MappingIterator<UserImportRequest> rows = reader.readValues(request.getInputStream())) {
+                userImportService.importUsers(rows, result -> {
+                    try {
+                        importResultWriter.writeValue(generator, result);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            generator.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_VALUE)).body(body);
     }
 
     @LogRequest
@@ -98,65 +201,223 @@ public class UserController {
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "OK. User removed successfully", response = String.class ),
             @ApiResponse(code = 400, message = "Bad Request. User couldn't be removed", response = String.class),
-            @ApiResponse(code = 403, message = "Forbidden. Need to login (authorize) first", response = String.class) })
-    public ResponseEntity deleteUser(@PathVariable(value = "id") Long userId) {
-        Map<String, Boolean> response = new HashMap<>();
+            @ApiResponse(code = 403, message = "Forbidden. Need to login (authorize) first", response = String.class),
+            @ApiResponse(code = 503, message = "Service unavailable. Too many requests in progress, retry later", response = String.class) })
+    public CompletableFuture<ResponseEntity> deleteUser(@PathVariable(value = "id") Long userId) {
         try {
-            User user = userService.findUserById(userId);
-            userService.deleteUser(userId);
+            return requestExecutionService.execute(() -> {
+                userService.deleteUser(userId);
 
-            return new ResponseEntity<>(String.format("User with id: %s has been removed successfully" , userId), HttpStatus.OK);
+                return (ResponseEntity) new ResponseEntity<>(String.format("User with id: %s has been removed successfully" , userId), HttpStatus.OK);
+            }).exceptionally(e -> {
+                if (unwrap(e) instanceof EntityNotFoundException) {
+                    log.error(String.format("Error removing user, user with id: %s can't be found" , userId));
+                    return new ResponseEntity<>(new ErrorMessage(String.format("Error removing user, user with id: %s can't be found" , userId)), HttpStatus.BAD_REQUEST);
+                }
+                throw new CompletionException(unwrap(e));
+            });
+        } catch (TaskRejectedException e) {
+            return CompletableFuture.completedFuture(serverBusy());
+        }
+    }
 
-        }  catch (EntityNotFoundException e) {
-            log.error(String.format("Error removing user, user with id: %s can't be found" , userId));
-            return new ResponseEntity<>(new ErrorMessage(String.format("Error removing user, user with id: %s can't be found" , userId)), HttpStatus.BAD_REQUEST);
+    @LogRequest
+    @GetMapping(value = "/{id:\\d+}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ApiOperation(value = "Get user", notes = "This method gets an user, its ETag is the version of the user. Send it back in If-None-Match to get a 304 while the user does not change, or in If-Match to update the user only if it has not changed")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK. User retrieved successfully", response = UserSummary.class ),
+            @ApiResponse(code = 304, message = "Not modified. The user still has the version given in If-None-Match"),
+            @ApiResponse(code = 404, message = "Not found. The user does not exist", response = String.class),
+            @ApiResponse(code = 503, message = "Service unavailable. Too many requests in progress, retry later", response = String.class) })
+    public CompletableFuture<ResponseEntity> getUser(@PathVariable Long id,
+                                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            return requestExecutionService.execute(() -> {
+                // usually served from the second level cache, an unchanged user is answered without serializing it
+                User user = userService.findUserById(id);
+                String etag = UserETag.of(user.getVersion());
+                if (ifNoneMatch != null && UserETag.matches(ifNoneMatch, etag)) {
+                    return (ResponseEntity) ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+                }
+                return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(UserSummary.of(user));
+            }).exceptionally(e -> {
+                if (unwrap(e) instanceof EntityNotFoundException) {
+                    return new ResponseEntity<>(new ErrorMessage(String.format("User with id: %s can't be found" , id)), HttpStatus.NOT_FOUND);
+                }
+                throw new CompletionException(unwrap(e));
+            });
+        } catch (TaskRejectedException e) {
+            return CompletableFuture.completedFuture(serverBusy());
         }
     }
 
     @LogRequest
     @PatchMapping("/update/{id}")
-    @ApiOperation(value = "Update user", notes = "This method updates an user in database. Needs authorization to run it.")
+    @ApiOperation(value = "Update user", notes = "This method updates an user in database. Needs authorization to run it. With If-Match, the user is only updated if its ETag is the one given")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "OK. Users updated successfully", response = User.class ),
+            @ApiResponse(code = 200, message = "OK. Users updated successfully", response = UserSummary.class ),
             @ApiResponse(code = 400, message = "Bad Request. User can´t be updated", response = String.class),
-            @ApiResponse(code = 403, message = "Forbidden. Need to login (authorize) first", response = String.class) })
-    public ResponseEntity updateUser(@PathVariable Long id, @RequestParam (required = false) String name, @RequestParam (required = false) String surname,
-                                       @RequestParam (required = false) boolean active, @RequestParam (required = false) Integer age) {
+            @ApiResponse(code = 403, message = "Forbidden. Need to login (authorize) first", response = String.class),
+            @ApiResponse(code = 412, message = "Precondition failed. The user has changed since the ETag given in If-Match", response = String.class),
+            @ApiResponse(code = 503, message = "Service unavailable. Too many requests in progress, retry later", response = String.class) })
+    public CompletableFuture<ResponseEntity> updateUser(@PathVariable Long id, @RequestParam (required = false) String name, @RequestParam (required = false) String surname,
+                                       @RequestParam (required = false) Boolean active, @RequestParam (required = false) Integer age,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = null;
+        if (ifMatch != null && !"*".equals(ifMatch.trim())) {
+            expectedVersion = UserETag.version(ifMatch.trim());
+            if (expectedVersion == null) {
+                // weak or foreign ETags never match
+                return CompletableFuture.completedFuture(modified(id));
+            }
+        }
+        Long version = expectedVersion;
         try {
-            List<UserValidationError> validationErrors = new ArrayList<UserValidationError>();
-            //Check if user is in database
-            User user = userService.findUserById(id);
+            // only the given columns are written, the user is not loaded first
+            return requestExecutionService.execute(() -> {
+                UserSummary user = userService.updateUser(id, name, surname, active, age, version);
+                return (ResponseEntity) ResponseEntity.ok().eTag(UserETag.of(user.getVersion())).body(user);
+            }).exceptionally(e -> {
+                if (unwrap(e) instanceof EntityNotFoundException) {
+                    return new ResponseEntity<>(new ErrorMessage(String.format("Error updating user, user with id: %s can't be found" , id)), HttpStatus.BAD_REQUEST);
+                }
+                if (unwrap(e) instanceof OptimisticLockingFailureException) {
+                    return modified(id);
+                }
+                if (unwrap(e) instanceof InvalidUserException) {
+                    return new ResponseEntity<>(((InvalidUserException) unwrap(e)).getValidationErrors(), HttpStatus.BAD_REQUEST);
+                }
+                throw new CompletionException(unwrap(e));
+            });
+        } catch (TaskRejectedException e) {
+            return CompletableFuture.completedFuture(serverBusy());
+        }
+    }
 
-            if(!StringUtils.isEmpty(name))
-                user.setName(name);
-            if(!StringUtils.isEmpty(surname))
-                user.setSurname(surname);
-            if(age != null)
-                user.setAge(age);
-            user.setActive(active);
+    private static ResponseEntity modified(Long id) {
+        return new ResponseEntity<>(new ErrorMessage(String.format("Error updating user, user with id: %s has changed, get it again" , id)),
+                HttpStatus.PRECONDITION_FAILED);
+    }
 
-            validationErrors = userValidationService.validateUser(user);
+    @LogRequest
+    @GetMapping(value = "/list", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ApiOperation(value = "List users", notes = "This method list the users matching the filters by pages, ordered by id unless a sort like 'surname,desc' is given. Send the 'next' token of a page, with the same filters and sort, to get the following one")
+    @Operation(security = @SecurityRequirement(name = "bearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK. Users retrieved successfully", response = UserPage.class ),
+            @ApiResponse(code = 400, message = "Bad Request", response = String.class),
+            @ApiResponse(code = 503, message = "Service unavailable. Too many requests in progress, retry later", response = String.class) })
+    public CompletableFuture<ResponseEntity> getAllUsers(UserFilter filter, BindingResult filterErrors, @RequestParam(required = false) String sort,
+                                                         @RequestParam(required = false) String next, @RequestParam(required = false) Integer size) {
+        if (filterErrors.hasErrors()) {
+            return CompletableFuture.completedFuture(invalidFilter(filterErrors));
+        }
+        int pageSize = size == null ? defaultPageSize : size;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(new ErrorMessage(String.format("Page size must be between 1 and %s", maxPageSize)), HttpStatus.BAD_REQUEST));
+        }
+        UserSort userSort;
+        try {
+            userSort = sort == null ? UserSort.DEFAULT : UserSort.parse(sort);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(invalidSort(sort));
+        }
+        UserCursor after;
+        try {
+            after = next == null ? null : ContinuationToken.decode(next, userSort);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(new ErrorMessage("Invalid continuation token"), HttpStatus.BAD_REQUEST));
+        }
 
-            if (validationErrors.isEmpty()) {
-                return new ResponseEntity<User>(userService.saveUser(user), HttpStatus.OK);
-            } else {
-                return new ResponseEntity<>(validationErrors, HttpStatus.BAD_REQUEST);
-            }
-        } catch (EntityNotFoundException e) {
-            return new ResponseEntity(new ErrorMessage(String.format("Error updating user, user with id: %s can't be found" , id)), HttpStatus.BAD_REQUEST);
+        try {
+            return requestExecutionService.execute(() -> {
+                // one extra row tells whether there is a next page without counting
+                List<UserSummary> users = userService.getUsers(filter, userSort, after, pageSize + 1);
+                String nextToken = null;
+                if (users.size() > pageSize) {
+                    users = users.subList(0, pageSize);
+                    nextToken = ContinuationToken.encode(userSort, users.get(pageSize - 1));
+                }
+                return new ResponseEntity<>(new UserPage(users, nextToken), HttpStatus.OK);
+            });
+        } catch (TaskRejectedException e) {
+            return CompletableFuture.completedFuture(serverBusy());
         }
     }
 
     @LogRequest
-    @GetMapping("/list")
-    @ApiOperation(value = "List users", notes = "This method list all users")
-    @Operation(security = @SecurityRequirement(name = "bearerAuth"))
+    @GetMapping(value = "/list", produces = NDJSON_VALUE)
+    @ApiOperation(value = "Stream users", notes = "This method streams the users matching the filters as newline delimited json, one user per line, ordered by id unless a sort is given")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "OK. Users retrieved successfully", response = List.class ),
+            @ApiResponse(code = 200, message = "OK. Users streamed successfully", response = UserSummary.class, responseContainer = "List"),
             @ApiResponse(code = 400, message = "Bad Request", response = String.class) })
-    public List<User> getAllUsers() {
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(UserFilter filter, BindingResult filterErrors, @RequestParam(required = false) String sort) {
+        if (filterErrors.hasErrors()) {
+            return streamed(invalidFilter(filterErrors));
+        }
+        UserSort userSort;
+        try {
+            userSort = sort == null ? UserSort.DEFAULT : UserSort.parse(sort);
+        } catch (IllegalArgumentException e) {
+            return streamed(invalidSort(sort));
+        }
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)
+                    .setRootValueSeparator(null);
+            userService.streamUsers(filter, userSort, user -> {
+                try {
+                    summaryWriter.writeValue(generator, user);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_VALUE)).body(body);
+    }
+
+    private static ResponseEntity invalidFilter(BindingResult filterErrors) {
+        return new ResponseEntity<>(new ErrorMessage(filterErrors.getFieldErrors().stream()
+                .map(error -> String.format("Invalid value for %s: %s", error.getField(), error.getRejectedValue()))
+                .collect(Collectors.toList())), HttpStatus.BAD_REQUEST);
+    }
+
+    private static ResponseEntity invalidSort(String sort) {
+        return new ResponseEntity<>(new ErrorMessage(String.format("Invalid sort: %s, use a field among id, name, surname, age, "
+                + "creationDate and lastLogging, optionally followed by ,asc or ,desc", sort)), HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Error response of a streaming method, the body is written as json
+     * @param error, the error response
+     * @return the same response, with a streamed body
+     */
+    private ResponseEntity<StreamingResponseBody> streamed(ResponseEntity<?> error) {
+        return ResponseEntity.status(error.getStatusCode()).contentType(MediaType.APPLICATION_JSON)
+                .body(outputStream -> objectMapper.writeValue(outputStream, error.getBody()));
+    }
+
+    /**
+     * Answer the streamed responses the pool they are written on has no room for, see
+     * RequestExecutionConfiguration#applicationTaskExecutor
+     * @param e, the rejection
+     * @return a service unavailable in json, whatever the response would have been
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity streamRejected(TaskRejectedException e) {
+        log.error("Streaming pool saturated, response rejected");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+                .contentType(MediaType.APPLICATION_JSON).body(new ErrorMessage("Server busy, try again later"));
+    }
+
+    private ResponseEntity serverBusy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1").body(new ErrorMessage("Server busy, try again later"));
+    }
 
-        return userService.getUsers();
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
     }
 
 }
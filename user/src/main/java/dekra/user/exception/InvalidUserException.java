@@ -0,0 +1,20 @@
+package dekra.user.exception;
+
+import dekra.user.model.entities.UserValidationError;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * An user failed its validation inside a transaction, which is rolled back
+ */
+@Getter
+public class InvalidUserException extends RuntimeException {
+
+    private final transient List<UserValidationError> validationErrors;
+
+    public InvalidUserException(List<UserValidationError> validationErrors) {
+        super("Invalid user");
+        this.validationErrors = validationErrors;
+    }
+}
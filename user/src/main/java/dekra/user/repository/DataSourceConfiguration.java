@@ -0,0 +1,33 @@
+package dekra.user.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Connection pool of the database. Configured with the spring.datasource.hikari properties,
+ * the pool size defaults to twice the cores plus one, the usual starting point for a database
+ * on the same machine: enough connections to keep every core busy while others wait on I/O,
+ * not so many that they contend for the database. Pool metrics are published by the actuator
+ * as hikaricp.connections.*.
+ */
+@Configuration
+public class DataSourceConfiguration {
+
+    /**
+     * The pool of the primary database, the only one unless a read replica is enabled, see
+     * {@link ReadReplicaConfiguration}. Properties are bound after this method returns, so a
+     * configured maximum-pool-size replaces the default set here
+     * @param properties, the url and credentials of the database
+     * @return the pool
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setMaximumPoolSize(Runtime.getRuntime().availableProcessors() * 2 + 1);
+        return dataSource;
+    }
+}
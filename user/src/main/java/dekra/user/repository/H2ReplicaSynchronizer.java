@@ -0,0 +1,81 @@
+package dekra.user.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PostConstruct;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+
+/**
+ * Keeps a local H2 replica in sync with an H2 primary, to run the read replica routing without a
+ * replicated database. Every sync-interval the replica copies the users table of the primary
+ * through a linked table, so reads see the primary as it was up to an interval before, like with
+ * an asynchronous replica. For development only, every copy reads the whole table.
+ */
+@Log4j2
+@RequiredArgsConstructor
+public class H2ReplicaSynchronizer {
+
+    private static final String LINKED_TABLE = "PRIMARY_USER";
+
+    private final HikariDataSource primary;
+
+    private final HikariDataSource replica;
+
+    private final ReadWriteRoutingDataSource routing;
+
+    private boolean schemaCreated;
+
+    @PostConstruct
+    void trackLag() {
+        // nothing copied yet, reads stay on the primary until the first copy
+        routing.replicaSynchronized(Instant.EPOCH);
+    }
+
+    @Scheduled(fixedDelayString = "${user.datasource.replica.sync-interval}")
+    public void synchronize() {
+        Instant start = Instant.now();
+        try (Connection connection = replica.getConnection(); Statement statement = connection.createStatement()) {
+            if (!schemaCreated) {
+                createSchema(statement);
+                schemaCreated = true;
+            }
+            // deletions first, a username freed on the primary may already belong to a new user
+            statement.executeUpdate("DELETE FROM USER WHERE ID NOT IN (SELECT ID FROM " + LINKED_TABLE + ")");
+            statement.executeUpdate("MERGE INTO USER KEY(ID) SELECT * FROM " + LINKED_TABLE);
+            connection.commit();
+            routing.replicaSynchronized(start);
+        } catch (SQLException e) {
+            log.error("Replica synchronization failed", e);
+        }
+    }
+
+    /**
+     * Create the users table of the primary, with its indexes, and the table linked to it
+     * @param replicaStatement, a statement of the replica
+     */
+    private void createSchema(Statement replicaStatement) throws SQLException {
+        try (Connection connection = primary.getConnection(); Statement statement = connection.createStatement();
+             ResultSet script = statement.executeQuery("SCRIPT NODATA NOPASSWORDS NOSETTINGS TABLE USER")) {
+            while (script.next()) {
+                String command = script.getString(1);
+                if (!command.startsWith("--") && !command.startsWith("CREATE USER")) {
+                    replicaStatement.execute(command);
+                }
+            }
+        }
+        replicaStatement.execute(String.format("CREATE LINKED TABLE %s('org.h2.Driver', '%s', '%s', '%s', 'USER') READONLY",
+                LINKED_TABLE, quote(primary.getJdbcUrl()), quote(primary.getUsername()), quote(primary.getPassword())));
+        log.info("Replica schema created, copying the primary every interval");
+    }
+
+    private static String quote(String value) {
+        return value == null ? "" : value.replace("'", "''");
+    }
+}
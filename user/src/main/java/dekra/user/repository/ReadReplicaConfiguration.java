@@ -0,0 +1,59 @@
+package dekra.user.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Read replica of the database. The application uses a datasource routing the read-only
+ * transactions (lists, streams, existence checks) to the replica pool and the rest to the
+ * primary pool, see {@link ReadWriteRoutingDataSource}. Users themselves are loaded from the
+ * primary, the second level cache never holds a replica row. The replica pool is configured with
+ * user.datasource.replica.hikari, on top of the settings of the primary pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "user.datasource.replica.enabled", havingValue = "true")
+public class ReadReplicaConfiguration {
+
+    @Bean
+    @ConfigurationProperties("user.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource) {
+        HikariDataSource replica = new HikariDataSource();
+        primaryDataSource.copyStateTo(replica);
+        replica.setPoolName(primaryDataSource.getPoolName() + "-replica");
+        return replica;
+    }
+
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                                       @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                                       @Value("${user.datasource.replica.max-lag}") Duration maxLag) {
+        return new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSource, maxLag);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * Copy of the primary into a local H2 replica, only when there is no replication
+     */
+    @Bean
+    @ConditionalOnProperty(name = "user.datasource.replica.sync-interval")
+    public H2ReplicaSynchronizer replicaSynchronizer(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+                                                     @Qualifier("replicaDataSource") HikariDataSource replicaDataSource,
+                                                     ReadWriteRoutingDataSource routingDataSource) {
+        return new H2ReplicaSynchronizer(primaryDataSource, replicaDataSource, routingDataSource);
+    }
+}
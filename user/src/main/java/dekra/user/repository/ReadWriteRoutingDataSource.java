@@ -0,0 +1,78 @@
+package dekra.user.repository;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Sends the read-only transactions to the replica and everything else to the primary. Reads
+ * stay on the primary when the replica is behind more than the tolerated lag and when it can not
+ * give a connection. Loads of entities, which fill the second level cache, must not be read-only:
+ * a stale row from the replica would be served from the cache until it expires.
+ *
+ * Must be used through a LazyConnectionDataSourceProxy: transactions take their connection
+ * before they are marked read-only, the proxy defers it to the first statement.
+ */
+@Log4j2
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private enum Target { PRIMARY, REPLICA }
+
+    private final DataSource primary;
+
+    private final DataSource replica;
+
+    private final Duration maxLag;
+
+    /**
+     * Time the replica had every change of the primary up to, null when it is not tracked
+     */
+    private volatile Instant replicaSynchronizedAt;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration maxLag) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLag = maxLag;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    /**
+     * Record how up to date the replica is, reads go to the primary while it is behind more than
+     * the tolerated lag
+     * @param synchronizedAt, the replica has every change of the primary made before this time
+     */
+    public void replicaSynchronized(Instant synchronizedAt) {
+        replicaSynchronizedAt = synchronizedAt;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Target.PRIMARY;
+        }
+        Instant synchronizedAt = replicaSynchronizedAt;
+        return synchronizedAt == null || Duration.between(synchronizedAt, Instant.now()).compareTo(maxLag) <= 0
+                ? Target.REPLICA : Target.PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (determineCurrentLookupKey() == Target.PRIMARY) {
+            return primary.getConnection();
+        }
+        try {
+            return replica.getConnection();
+        } catch (SQLException e) {
+            log.warn("Replica unavailable, reading from the primary: {}", e.getMessage());
+            return primary.getConnection();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package dekra.user.repository;
+
+import dekra.user.model.entities.User;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Hibernate second level cache of the users, held in memory by Ehcache. Users are cached by id
+ * and their usernames, the natural id, are cached to resolve logins and username lookups. Both
+ * regions are bounded in entries and expire a configurable time after being written. Hibernate
+ * keeps them up to date on every save and delete.
+ */
+@Configuration
+@ConditionalOnProperty(name = "user.cache.enabled", havingValue = "true")
+public class SecondLevelCacheConfiguration {
+
+    public static final String USER_REGION = User.class.getName();
+
+    public static final String USER_NATURAL_ID_REGION = USER_REGION + "##NaturalId";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager userCacheManager(@Value("${user.cache.max-entries}") long maxEntries,
+                                         @Value("${user.cache.ttl}") Duration ttl) {
+        // a manager of its own, the default one is shared by every application context of the JVM
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(URI.create("urn:user-cache:" + UUID.randomUUID()),
+                new DefaultConfiguration(provider.getDefaultClassLoader()));
+        javax.cache.configuration.Configuration<Object, Object> configuration = Eh107Configuration.fromEhcacheCacheConfiguration(
+                CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(maxEntries))
+                        .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(ttl)));
+        cacheManager.createCache(USER_REGION, configuration);
+        cacheManager.createCache(USER_NATURAL_ID_REGION, configuration);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager userCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, userCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+}
@@ -5,11 +5,7 @@ import dekra.user.model.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
-
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
-
-    Optional<User> findByUserName (String userName);
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
 }
@@ -0,0 +1,27 @@
+package dekra.user.repository;
+
+import dekra.user.model.entities.User;
+import dekra.user.model.entities.UserCursor;
+import dekra.user.model.entities.UserSort;
+import dekra.user.model.entities.UserSummary;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface UserRepositoryCustom {
+
+    Optional<User> findByUserName(String userName);
+
+    List<UserSummary> findSummaries(Specification<User> specification, UserSort sort, UserCursor after, int limit);
+
+    Stream<UserSummary> streamSummaries(Specification<User> specification, UserSort sort);
+
+    Optional<UserSummary> findSummaryById(Long id);
+
+    int patchById(Long id, String name, String surname, Boolean active, Integer age, Long expectedVersion);
+
+    int removeById(Long id);
+
+}
@@ -0,0 +1,241 @@
+package dekra.user.repository;
+
+import dekra.user.model.entities.User;
+import dekra.user.model.entities.UserCursor;
+import dekra.user.model.entities.UserSort;
+import dekra.user.model.entities.UserSummary;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+/**
+ * Custom part of {@link UserRepository}
+ */
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private static final String DELETE_USER = "DELETE FROM USER WHERE ID = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Find an user by its natural id. The username to id resolution and the user itself are
+     * served from the second level cache when they are there. Not read-only: a miss fills the
+     * cache, so it reads from the primary and never from a replica behind it
+     * @param userName, the username
+     * @return the user, if it exists
+     */
+    @Override
+    @Transactional
+    public Optional<User> findByUserName(String userName) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).loadOptional(userName);
+    }
+
+    /**
+     * Keyset page of the summaries of the users matching a specification
+     * @param specification, the users to list, null for all of them
+     * @param sort, the order of the list
+     * @param after, the position of the last user of the previous page, null for the first page
+     * @param limit, the maximum number of users
+     * @return the users of the page
+     */
+    @Override
+    public List<UserSummary> findSummaries(Specification<User> specification, UserSort sort, UserCursor after, int limit) {
+        Specification<User> page = after == null ? specification : Specification.where(specification).and(after(sort, after));
+        return query(page, sort).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Stream the summaries of the users matching a specification, reading the rows through a
+     * JDBC cursor. Must be consumed inside a transaction and closed afterwards.
+     * @param specification, the users to list, null for all of them
+     * @param sort, the order of the stream
+     * @return the stream of summaries
+     */
+    @Override
+    public Stream<UserSummary> streamSummaries(Specification<User> specification, UserSort sort) {
+        return query(specification, sort).setHint(HINT_FETCH_SIZE, 500).getResultStream();
+    }
+
+    /**
+     * Find the summary of an user, without loading the entity
+     * @param id, the id of the user
+     * @return the summary, if the user exists
+     */
+    @Override
+    public Optional<UserSummary> findSummaryById(Long id) {
+        Specification<User> byId = (user, query, builder) -> builder.equal(user.get("id"), id);
+        return query(byId, UserSort.DEFAULT).getResultStream().findFirst();
+    }
+
+    /**
+     * Update the given columns of an user in a single statement, the user is not loaded first.
+     * Plain JDBC rather than a JPQL update: hibernate would evict every cached user after a bulk
+     * update, here only this one is evicted, once the transaction ends
+     * @param id, the id of the user
+     * @param name, the new name, null to keep it
+     * @param surname, the new surname, null to keep it
+     * @param active, whether the user is active, null to keep it
+     * @param age, the new age, null to keep it
+     * @param expectedVersion, the version the user must have to be updated, null to update any
+     * @return the number of users updated, 0 if it does not exist or has another version
+     */
+    @Override
+    @Transactional
+    public int patchById(Long id, String name, String surname, Boolean active, Integer age, Long expectedVersion) {
+        StringBuilder sql = new StringBuilder("UPDATE USER SET VERSION = VERSION + 1");
+        List<Object> args = new ArrayList<>(6);
+        if (active != null) {
+            sql.append(", ACTIVE = ?");
+            args.add(active);
+        }
+        if (name != null) {
+            sql.append(", NAME = ?");
+            args.add(name);
+        }
+        if (surname != null) {
+            sql.append(", SURNAME = ?");
+            args.add(surname);
+        }
+        if (age != null) {
+            sql.append(", AGE = ?");
+            args.add(age);
+        }
+        sql.append(" WHERE ID = ?");
+        args.add(id);
+        if (expectedVersion != null) {
+            sql.append(" AND VERSION = ?");
+            args.add(expectedVersion);
+        }
+        int rows = jdbcTemplate.update(sql.toString(), args.toArray());
+        if (rows > 0) {
+            evictOnCompletion(id, false);
+        }
+        return rows;
+    }
+
+    /**
+     * Delete an user in a single statement, the user is not loaded first
+     * @param id, the id of the user
+     * @return the number of users deleted, 0 if it does not exist
+     */
+    @Override
+    @Transactional
+    public int removeById(Long id) {
+        int rows = jdbcTemplate.update(DELETE_USER, id);
+        if (rows > 0) {
+            // the username is not known here, all the cached username resolutions are evicted
+            evictOnCompletion(id, true);
+        }
+        return rows;
+    }
+
+    /**
+     * Evict an user changed outside of hibernate from the second level cache when the current
+     * transaction ends, so that no reader caches the old row again before the commit
+     * @param id, the id of the user
+     * @param naturalIds, whether the username to id resolutions have to be evicted too
+     */
+    private void evictOnCompletion(Long id, boolean naturalIds) {
+        SessionFactory sessionFactory = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class);
+        Runnable evict = () -> {
+            sessionFactory.getCache().evictEntityData(User.class, id);
+            if (naturalIds) {
+                sessionFactory.getCache().evictNaturalIdData(User.class);
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                evict.run();
+            }
+        });
+    }
+
+    private TypedQuery<UserSummary> query(Specification<User> specification, UserSort sort) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UserSummary> query = builder.createQuery(UserSummary.class);
+        Root<User> user = query.from(User.class);
+        // only the columns of the summary are selected, no entity is loaded
+        query.select(builder.construct(UserSummary.class, user.get("id"), user.get("userName"), user.get("name"),
+                user.get("surname"), user.get("email"), user.get("age"), user.get("active"), user.get("lastLogging"),
+                user.get("creationDate"), user.get("version")));
+        Predicate predicate = specification == null ? null : specification.toPredicate(user, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        Path<?> id = user.get("id");
+        if (sort.getField() == UserSort.Field.ID) {
+            query.orderBy(sort.isAscending() ? builder.asc(id) : builder.desc(id));
+        } else {
+            Path<?> field = user.get(sort.getField().getAttribute());
+            Order[] order = sort.isAscending()
+                    ? new Order[]{builder.asc(field), builder.asc(id)}
+                    : new Order[]{builder.desc(field), builder.desc(id)};
+            query.orderBy(order);
+        }
+        return entityManager.createQuery(query);
+    }
+
+    /**
+     * Users after a position in a sorted list. Users without the sort field are listed first in
+     * ascending order and last in descending order, as databases sorting nulls low (H2) do
+     * @param sort, the order of the list
+     * @param after, the position
+     * @return the specification
+     */
+    @SuppressWarnings("unchecked")
+    private static Specification<User> after(UserSort sort, UserCursor after) {
+        Long lastId = after.getId();
+        boolean ascending = sort.isAscending();
+        if (sort.getField() == UserSort.Field.ID) {
+            return (user, query, builder) -> ascending
+                    ? builder.greaterThan(user.get("id"), lastId)
+                    : builder.lessThan(user.get("id"), lastId);
+        }
+        String attribute = sort.getField().getAttribute();
+        Comparable<Object> value = (Comparable<Object>) after.getValue();
+        return (user, query, builder) -> {
+            Path<Comparable<Object>> field = user.get(attribute);
+            Path<Long> id = user.get("id");
+            Predicate sameValueAfter = ascending ? builder.greaterThan(id, lastId) : builder.lessThan(id, lastId);
+            if (value == null) {
+                Predicate nullAfter = builder.and(builder.isNull(field), sameValueAfter);
+                return ascending ? builder.or(nullAfter, builder.isNotNull(field)) : nullAfter;
+            }
+            Predicate valueAfter = builder.or(
+                    ascending ? builder.greaterThan(field, value) : builder.lessThan(field, value),
+                    builder.and(builder.equal(field, value), sameValueAfter));
+            return ascending ? valueAfter : builder.or(valueAfter, builder.isNull(field));
+        };
+    }
+}
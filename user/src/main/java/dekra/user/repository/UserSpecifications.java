@@ -0,0 +1,80 @@
+package dekra.user.repository;
+
+import dekra.user.model.entities.User;
+import dekra.user.model.entities.UserFilter;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Conditions of the user list as specifications, every one of them can be served by an
+ * index of the users table
+ */
+public final class UserSpecifications {
+
+    private static final char ESCAPE = '\\';
+
+    private UserSpecifications() {
+    }
+
+    /**
+     * Users matching every filter set
+     * @param filter, the filters, null or empty to match every user
+     * @return the specification, null when there is nothing to filter
+     */
+    public static Specification<User> matching(UserFilter filter) {
+        if (filter == null) {
+            return null;
+        }
+        return Specification.where(active(filter.getActive()))
+                .and(ageBetween(filter.getMinAge(), filter.getMaxAge()))
+                .and(within("creationDate", filter.getCreatedFrom(), filter.getCreatedTo()))
+                .and(within("lastLogging", filter.getLastLoggingFrom(), filter.getLastLoggingTo()))
+                .and(startsWith("name", filter.getName()))
+                .and(startsWith("surname", filter.getSurname()));
+    }
+
+    public static Specification<User> active(Boolean active) {
+        return active == null ? null : (user, query, builder) -> builder.equal(user.get("active"), active);
+    }
+
+    public static Specification<User> ageBetween(Integer min, Integer max) {
+        if (min == null && max == null) {
+            return null;
+        }
+        return (user, query, builder) -> min == null ? builder.le(user.<Integer>get("age"), max)
+                : max == null ? builder.ge(user.<Integer>get("age"), min)
+                : builder.between(user.<Integer>get("age"), min, max);
+    }
+
+    /**
+     * Users with a date in a window
+     * @param attribute, the date attribute
+     * @param from, the start of the window, included, null for no start
+     * @param to, the end of the window, excluded, null for no end
+     * @return the specification, null when the window is open on both sides
+     */
+    public static Specification<User> within(String attribute, LocalDateTime from, LocalDateTime to) {
+        Specification<User> after = from == null ? null
+                : (user, query, builder) -> builder.greaterThanOrEqualTo(user.<LocalDateTime>get(attribute), from);
+        Specification<User> before = to == null ? null
+                : (user, query, builder) -> builder.lessThan(user.<LocalDateTime>get(attribute), to);
+        return after == null ? before : after.and(before);
+    }
+
+    /**
+     * Users whose attribute starts with a prefix. A like without leading wildcard, so an index
+     * on the attribute is used
+     * @param attribute, the text attribute
+     * @param prefix, the prefix, case sensitive, null or empty to match every user
+     * @return the specification, null when there is no prefix
+     */
+    public static Specification<User> startsWith(String attribute, String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+        String pattern = prefix.replace(String.valueOf(ESCAPE), "" + ESCAPE + ESCAPE)
+                .replace("%", ESCAPE + "%").replace("_", ESCAPE + "_") + "%";
+        return (user, query, builder) -> builder.like(user.<String>get(attribute), pattern, ESCAPE);
+    }
+}
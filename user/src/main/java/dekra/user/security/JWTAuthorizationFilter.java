@@ -2,10 +2,16 @@ package dekra.user.security;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.InvalidClaimException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.SignatureException;
 import io.jsonwebtoken.UnsupportedJwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -15,15 +21,60 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * Authenticates the requests to protected routes from their JWT token, unless it has been
+ * revoked. Requests to public and static routes go straight through, their tokens are not read. The time spent here is published
+ * as security.filter, tagged with the route of the request.
+ */
 public class JWTAuthorizationFilter extends OncePerRequestFilter {
 
     private final String HEADER = "Authorization";
     private final String PREFIX = "Bearer ";
-    private final String SECRET = "mySecretKey";
+    private final JwtParser parser;
+
+    private final JWTAuthenticationCache authenticationCache;
+
+    private final JWTDenylist denylist;
+
+    private final RouteClassifier routeClassifier;
+
+    private final Map<RouteClassifier.Route, Timer> timers = new EnumMap<>(RouteClassifier.Route.class);
+
+    /**
+     * Create the filter
+     * @param secret, the key the tokens are signed with
+     * @param issuer, the issuer the tokens must have, empty to accept tokens of any issuer
+     * @param authenticationCache, the authentications of the tokens already verified
+     * @param denylist, the tokens revoked
+     * @param routeClassifier, the routes of the requests
+     * @param registry, where the time spent is published
+     */
+    public JWTAuthorizationFilter(String secret, String issuer, JWTAuthenticationCache authenticationCache, JWTDenylist denylist,
+                                  RouteClassifier routeClassifier, MeterRegistry registry) {
+        this.parser = Jwts.parser().setSigningKey(secret.getBytes(StandardCharsets.UTF_8));
+        if (!issuer.isEmpty()) {
+            // revocations are not shared, tokens of other apps are not accepted
+            parser.requireIssuer(issuer);
+        }
+        this.authenticationCache = authenticationCache;
+        this.denylist = denylist;
+        this.routeClassifier = routeClassifier;
+        for (RouteClassifier.Route route : RouteClassifier.Route.values()) {
+            timers.put(route, Timer.builder("security.filter")
+                    .description("Time spent authenticating the requests")
+                    .tag("route", route.name().toLowerCase())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry));
+        }
+    }
 
     /**
      * Process each request
@@ -35,47 +86,86 @@ public class JWTAuthorizationFilter extends OncePerRequestFilter {
      */
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        long start = System.nanoTime();
+        RouteClassifier.Route route = routeClassifier.classify(request);
         try {
-            if (checkJWTToken(request, response)) {
-                Claims claims = validateToken(request);
-                if (claims.get("authorities") != null) {
-                    setUpSpringAuthentication(claims);
-                } else {
-                    SecurityContextHolder.clearContext();
-                }
+            if (route.needsAuthentication()) {
+                authorize(request, response);
+            }
+        } catch (ExpiredJwtException | InvalidClaimException | UnsupportedJwtException | MalformedJwtException | SignatureException e) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, e.getMessage());
+            return;
+        } finally {
+            timers.get(route).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Set the authentication of the request from its token, none if there is no valid one
+     * @param request, the http request
+     * @param response, the http response
+     */
+    private void authorize(HttpServletRequest request, HttpServletResponse response) {
+        if (checkJWTToken(request, response)) {
+            Authentication auth = authenticate(request.getHeader(HEADER).substring(PREFIX.length()));
+            if (auth != null) {
+                SecurityContextHolder.getContext().setAuthentication(auth);
             } else {
                 SecurityContextHolder.clearContext();
             }
-            chain.doFilter(request, response);
-        } catch (ExpiredJwtException | UnsupportedJwtException | MalformedJwtException e) {
-            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-            ((HttpServletResponse) response).sendError(HttpServletResponse.SC_FORBIDDEN, e.getMessage());
-            return;
+        } else {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    /**
+     * Get the authentication of a token, from the cache when it has already been verified. The
+     * revocations are checked every time, cached or not
+     * @param jwtToken, the token without the bearer prefix
+     * @return the authentication, or null if the token carries no authorities or has been revoked
+     * @throws InvalidClaimException if the token has no id or no expiration
+     */
+    private Authentication authenticate(String jwtToken) {
+        ByteBuffer key = authenticationCache.keyOf(jwtToken);
+        Authentication auth = authenticationCache.get(key);
+        if (auth == null) {
+            Claims claims = validateToken(jwtToken);
+            JWTTokenDetails details = JWTTokenDetails.of(claims);
+            if (claims.get("authorities") != null) {
+                auth = setUpSpringAuthentication(claims, details);
+                authenticationCache.put(key, auth, claims.getExpiration());
+            }
         }
+        if (auth != null && denylist.isRevoked(((JWTTokenDetails) auth.getDetails()).getId())) {
+            return null;
+        }
+        return auth;
     }
 
     /**
      * Validate the token that comes in the header of the request
-     * @param request, the http request
+     * @param jwtToken, the token without the bearer prefix
      * @return the information exchanged
      */
-    private Claims validateToken(HttpServletRequest request) {
-        String jwtToken = request.getHeader(HEADER).replace(PREFIX, "");
-        return Jwts.parser().setSigningKey(SECRET.getBytes(Charset.forName("UTF-8"))).parseClaimsJws(jwtToken).getBody();
+    private Claims validateToken(String jwtToken) {
+        return parser.parseClaimsJws(jwtToken).getBody();
     }
 
     /**
      * Authentication method in Spring flow
      *
      * @param claims the information exchanged
+     * @param details the id and the expiration of the token
+     * @return the authentication of the token subject
      */
-    private void setUpSpringAuthentication(Claims claims) {
-        List<String> authorities = (List<String>) claims.get("authorities");
-
-        UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(claims.getSubject(), null,
-                authorities.stream().map(SimpleGrantedAuthority::new).collect(Collectors.toList()));
-        SecurityContextHolder.getContext().setAuthentication(auth);
+    private Authentication setUpSpringAuthentication(Claims claims, JWTTokenDetails details) {
+        List<?> authorities = (List<?>) claims.get("authorities");
 
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(claims.getSubject(), null,
+                authorities.stream().map(String::valueOf).map(SimpleGrantedAuthority::new).collect(Collectors.toList()));
+        authentication.setDetails(details);
+        return authentication;
     }
 
     /**
@@ -91,4 +181,4 @@ public class JWTAuthorizationFilter extends OncePerRequestFilter {
         return true;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,72 @@
+package dekra.user.security;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password hashing setup. BCrypt work runs on a dedicated pool, so a login burst can not take
+ * every servlet thread. The queue is bounded: when it is full new tasks are rejected straight
+ * away and the controllers answer 503 instead of piling requests up.
+ */
+@Log4j2
+@Configuration
+public class PasswordHashingConfiguration {
+
+    private static final int MAX_STRENGTH = 31;
+
+    /**
+     * BCrypt encoder. The configured strength is the minimum; when a target time is configured
+     * the strength is raised, benchmarking this machine, while a hash stays within the target.
+     * @param strength, the BCrypt cost factor
+     * @param targetMillis, the time a hash should take, 0 to use the strength as it is
+     * @return the password encoder
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(@Value("${security.bcrypt.strength}") int strength,
+                                           @Value("${security.bcrypt.target-millis:0}") long targetMillis) {
+        if (targetMillis > 0) {
+            strength = calibrateStrength(strength, targetMillis);
+        }
+        log.info("BCrypt strength: {}", strength);
+        return new BCryptPasswordEncoder(strength);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashingExecutor(@Value("${security.bcrypt.pool-size:0}") int poolSize,
+                                                          @Value("${security.bcrypt.queue-capacity}") int queueCapacity) {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("bcrypt-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+    /**
+     * Find the highest strength, starting from a minimum, whose hash takes at most the target time
+     * @param minStrength, the strength to start from
+     * @param targetMillis, the maximum time of a hash
+     * @return the strength
+     */
+    private int calibrateStrength(int minStrength, long targetMillis) {
+        int strength = minStrength;
+        while (strength < MAX_STRENGTH) {
+            long start = System.nanoTime();
+            new BCryptPasswordEncoder(strength + 1).encode("calibration");
+            if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) > targetMillis) {
+                break;
+            }
+            strength++;
+        }
+        return strength;
+    }
+}
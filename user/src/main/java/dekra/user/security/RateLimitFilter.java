@@ -0,0 +1,57 @@
+package dekra.user.security;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dekra.user.exception.ErrorMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Rate limits the endpoints configured in {@link RateLimitProperties}, see {@link RateLimits}.
+ * Requests over a limit are answered 429 with Retry-After right here, before any other work is
+ * done for them.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimits limits;
+
+    private final byte[] rejectedBody;
+
+    public RateLimitFilter(RateLimitProperties properties, ObjectMapper objectMapper, MeterRegistry registry) throws JsonProcessingException {
+        this.limits = new RateLimits(properties, registry);
+        this.rejectedBody = objectMapper.writeValueAsBytes(new ErrorMessage("Too many requests, try again later"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        String path = request.getPathInfo() == null ? request.getServletPath() : request.getServletPath() + request.getPathInfo();
+        long wait = limits.tryAcquire(request.getMethod(), path, request::getRemoteAddr, request::getParameter);
+        if (wait > 0) {
+            reject(response, wait);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Answer a request over its limit
+     * @param response, the http response
+     * @param waitNanos, nanoseconds until the request would be allowed
+     */
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, RateLimits.retryAfter(waitNanos));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(rejectedBody.length);
+        response.getOutputStream().write(rejectedBody);
+    }
+}
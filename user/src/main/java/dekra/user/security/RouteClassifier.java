@@ -0,0 +1,152 @@
+package dekra.user.security;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Classifies the requests by the access they need, from the access rules of the application.
+ * The rules are compiled into a trie of path segments, so a request is classified in one walk
+ * of its path instead of trying a list of ant matchers one after the other. A rule is a path,
+ * ending in /** to cover everything below it, and optionally a method; the most specific rule
+ * matching a request decides its route, and requests no rule matches are public.
+ */
+public class RouteClassifier {
+
+    /**
+     * What a route needs from the security filters
+     */
+    public enum Route {
+
+        /**
+         * Documentation and static resources, never authenticated
+         */
+        STATIC,
+
+        /**
+         * Endpoints open to everyone, tokens are not even read
+         */
+        PUBLIC,
+
+        /**
+         * Endpoints that need a valid token
+         */
+        PROTECTED;
+
+        public boolean needsAuthentication() {
+            return this == PROTECTED;
+        }
+    }
+
+    /**
+     * Slot of the rules that apply to any method, after the ones of each method
+     */
+    private static final int ANY_METHOD = HttpMethod.values().length;
+
+    private final Node root = new Node();
+
+    /**
+     * Add a rule for every method
+     * @param route, the route of the requests matching the rule
+     * @param patterns, the paths, ending in /** to cover everything below them
+     * @return this classifier
+     */
+    public RouteClassifier add(Route route, String... patterns) {
+        return add(null, route, patterns);
+    }
+
+    /**
+     * Add a rule for a method
+     * @param method, the method of the requests, null for all of them
+     * @param route, the route of the requests matching the rule
+     * @param patterns, the paths, ending in /** to cover everything below them
+     * @return this classifier
+     */
+    public RouteClassifier add(HttpMethod method, Route route, String... patterns) {
+        int slot = method == null ? ANY_METHOD : method.ordinal();
+        for (String pattern : patterns) {
+            boolean subtree = pattern.endsWith("/**");
+            String path = subtree ? pattern.substring(0, pattern.length() - 3) : pattern;
+            Node node = root;
+            for (String segment : path.split("/")) {
+                if (!segment.isEmpty()) {
+                    node = node.children.computeIfAbsent(segment, key -> new Node());
+                }
+            }
+            (subtree ? node.subtree : node.exact)[slot] = route;
+        }
+        return this;
+    }
+
+    /**
+     * Classify a request
+     * @param request, the http request
+     * @return the route of the request
+     */
+    public Route classify(HttpServletRequest request) {
+        HttpMethod method = HttpMethod.resolve(request.getMethod());
+        String path = request.getPathInfo() == null ? request.getServletPath() : request.getServletPath() + request.getPathInfo();
+        return classify(method == null ? -1 : method.ordinal(), path);
+    }
+
+    /**
+     * Matcher of the requests of a route, for the access rules of spring security
+     * @param route, the route
+     * @return the matcher
+     */
+    public RequestMatcher matcher(Route route) {
+        return request -> classify(request) == route;
+    }
+
+    private Route classify(int method, String path) {
+        Node node = root;
+        Route route = node.route(node.subtree, method);
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                node = node.children.get(path.substring(start, end));
+                if (node == null) {
+                    return route == null ? Route.PUBLIC : route;
+                }
+                Route below = node.route(node.subtree, method);
+                if (below != null) {
+                    route = below;
+                }
+            }
+            start = end + 1;
+        }
+        Route exact = node.route(node.exact, method);
+        if (exact != null) {
+            return exact;
+        }
+        return route == null ? Route.PUBLIC : route;
+    }
+
+    private static final class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+
+        /**
+         * Routes of the requests to this path, by method
+         */
+        private final Route[] exact = new Route[ANY_METHOD + 1];
+
+        /**
+         * Routes of the requests to this path or below it, by method
+         */
+        private final Route[] subtree = new Route[ANY_METHOD + 1];
+
+        private Route route(Route[] routes, int method) {
+            Route route = method < 0 ? null : routes[method];
+            return route == null ? routes[ANY_METHOD] : route;
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package dekra.user.security;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dekra.user.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.context.annotation.Bean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
@@ -11,9 +13,12 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.header.writers.CacheControlHeadersWriter;
+import org.springframework.security.web.header.writers.DelegatingRequestMatcherHeaderWriter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.NegatedRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 
 import javax.persistence.EntityNotFoundException;
 
@@ -34,11 +39,52 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
             "/webjars/**"
     };
 
+    /**
+     * Access rules of the application, shared by the JWT filter and the authorization checks
+     */
+    public static final RouteClassifier ROUTES = new RouteClassifier()
+            .add(RouteClassifier.Route.STATIC, AUTH_WHITELIST)
+            .add(HttpMethod.POST, RouteClassifier.Route.PUBLIC, "/auth/**")
+            .add(HttpMethod.POST, RouteClassifier.Route.PROTECTED, "/auth/logout")
+            .add(HttpMethod.POST, RouteClassifier.Route.PROTECTED, "/api/user/batch")
+            .add(HttpMethod.GET, RouteClassifier.Route.PUBLIC, "/api/**")
+            .add(HttpMethod.DELETE, RouteClassifier.Route.PROTECTED, "/api/**")
+            .add(HttpMethod.PATCH, RouteClassifier.Route.PROTECTED, "/api/**");
+
+    /**
+     * Responses with an ETag, they set their own cache control
+     */
+    private static final RequestMatcher CONDITIONAL_GETS = new AntPathRequestMatcher("/api/user/{id:\\d+}", HttpMethod.GET.name());
+
     private final UserRepository userRepository;
 
+    private final JWTAuthenticationCache authenticationCache;
+
+    private final JWTDenylist denylist;
+
+    private final String jwtSecret;
 
-    public SecurityConfiguration(UserRepository userRepo) {
+    private final String jwtIssuer;
+
+    private final MeterRegistry meterRegistry;
+
+    private final RateLimitProperties rateLimitProperties;
+
+    private final ObjectMapper objectMapper;
+
+
+    public SecurityConfiguration(UserRepository userRepo, JWTAuthenticationCache authenticationCache, JWTDenylist denylist,
+                                 @Value("${security.jwt.secret}") String jwtSecret, @Value("${security.jwt.issuer:}") String jwtIssuer,
+                                 MeterRegistry meterRegistry,
+                                 RateLimitProperties rateLimitProperties, ObjectMapper objectMapper) {
         this.userRepository = userRepo;
+        this.authenticationCache = authenticationCache;
+        this.denylist = denylist;
+        this.jwtSecret = jwtSecret;
+        this.jwtIssuer = jwtIssuer;
+        this.meterRegistry = meterRegistry;
+        this.rateLimitProperties = rateLimitProperties;
+        this.objectMapper = objectMapper;
 
     }
 
@@ -55,15 +101,19 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
      */
         @Override
         protected void configure(HttpSecurity http) throws Exception {
+        if (rateLimitProperties.isEnabled()) {
+            // first of all, requests over their limit are not even authenticated
+            http.addFilterBefore(new RateLimitFilter(rateLimitProperties, objectMapper, meterRegistry), UsernamePasswordAuthenticationFilter.class);
+        }
         http.csrf().disable()
-                .addFilterAfter(new JWTAuthorizationFilter(), UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(new JWTAuthorizationFilter(jwtSecret, jwtIssuer, authenticationCache, denylist, ROUTES, meterRegistry),
+                        UsernamePasswordAuthenticationFilter.class)
                 .authorizeRequests()
-                .antMatchers(AUTH_WHITELIST).permitAll()
-                .antMatchers(HttpMethod.POST, "/auth/**").permitAll()
-                .antMatchers(HttpMethod.GET, "/api/**").permitAll()
-                .antMatchers(HttpMethod.DELETE, "/api/**").authenticated()
-                .antMatchers(HttpMethod.PATCH, "/api/**").authenticated()
+                .requestMatchers(ROUTES.matcher(RouteClassifier.Route.PROTECTED)).authenticated()
                 .anyRequest().permitAll();
+        // caches have to revalidate the responses with an ETag, instead of not storing them at all
+        http.headers().cacheControl().disable()
+                .addHeaderWriter(new DelegatingRequestMatcherHeaderWriter(new NegatedRequestMatcher(CONDITIONAL_GETS), new CacheControlHeadersWriter()));
 
 }
 
@@ -72,9 +122,4 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     public void configure(WebSecurity web) throws Exception {
         web.ignoring().antMatchers("/api/h2/**");
     }
-
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package dekra.user.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+public interface RequestExecutionService {
+
+    <T> CompletableFuture<T> execute(Supplier<T> work);
+
+}
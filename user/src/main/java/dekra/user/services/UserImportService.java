@@ -0,0 +1,13 @@
+package dekra.user.services;
+
+import dekra.user.model.entities.UserImportRequest;
+import dekra.user.model.entities.UserImportResult;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+public interface UserImportService {
+
+    long importUsers(Iterator<UserImportRequest> rows, Consumer<UserImportResult> consumer);
+
+}
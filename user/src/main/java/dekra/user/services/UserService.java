@@ -1,8 +1,14 @@
 package dekra.user.services;
 
 import dekra.user.model.entities.User;
+import dekra.user.model.entities.UserCursor;
+import dekra.user.model.entities.UserFilter;
+import dekra.user.model.entities.UserSort;
+import dekra.user.model.entities.UserSummary;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserService {
 
@@ -10,11 +16,21 @@ public interface UserService {
 
     User saveUser(User user);
 
+    User createUser(User user);
+
+    List<User> createUsers(List<User> users);
+
+    UserSummary updateUser(Long userId, String name, String surname, Boolean active, Integer age, Long expectedVersion);
+
     void deleteUser(Long userId);
 
-    List<User> getUsers();
+    List<UserSummary> getUsers(UserFilter filter, UserSort sort, UserCursor after, int limit);
+
+    void streamUsers(UserFilter filter, UserSort sort, Consumer<UserSummary> consumer);
+
+    void recordLogin(Long userId, LocalDateTime lastLogging);
 
-    boolean findByUserName(String username);
+    void updatePassword(Long userId, String password);
 
 
 }
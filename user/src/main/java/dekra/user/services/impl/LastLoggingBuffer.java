@@ -0,0 +1,86 @@
+package dekra.user.services.impl;
+
+import dekra.user.model.entities.User;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind buffer of the last login of the users. Logins only record the time in memory,
+ * several logins of the same user between two flushes are coalesced into the latest one, and
+ * the pending times are written periodically as a single JDBC batch of one-column updates.
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class LastLoggingBuffer {
+
+    private static final String UPDATE_LAST_LOGGING = "UPDATE USER SET LAST_LOGGING = ?, VERSION = VERSION + 1 WHERE ID = ?";
+
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Record a login, to be written on the next flush
+     * @param userId, the id of the user
+     * @param lastLogging, the time of the login
+     */
+    public void record(Long userId, LocalDateTime lastLogging) {
+        pending.merge(userId, lastLogging, (previous, current) -> current.isAfter(previous) ? current : previous);
+    }
+
+    /**
+     * Write the pending logins to database. The transaction is started here rather than by a
+     * proxy, the flush on shutdown calls this method directly and, with auto-commit off, a batch
+     * outside a transaction is rolled back when its connection is closed
+     */
+    @Scheduled(fixedDelayString = "${user.last-logging.flush-interval}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>(pending.size());
+        for (Long userId : pending.keySet()) {
+            LocalDateTime lastLogging = pending.remove(userId);
+            if (lastLogging != null) {
+                batch.add(new Object[]{lastLogging, userId});
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_LAST_LOGGING, batch));
+            // the update bypasses hibernate, the cached copies are stale now
+            Cache cache = entityManagerFactory.getCache();
+            batch.forEach(row -> cache.evict(User.class, row[1]));
+        } catch (RuntimeException e) {
+            // keep them for the next flush unless a newer login has been recorded meanwhile
+            batch.forEach(row -> record((Long) row[1], (LocalDateTime) row[0]));
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Pending last logins could not be written on shutdown", e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package dekra.user.services.impl;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * How the requests are executed, set by user.execution.mode:
+ * blocking, the default, every request runs on a Tomcat thread from start to end.
+ * async, the database work runs on a bounded pool sized like the connection pool, the Tomcat
+ * thread is released meanwhile and more connections are served with the same threads.
+ * virtual-threads, Tomcat runs every request on its own virtual thread, needs Java 21 or later.
+ * In every mode the streamed responses are written on the bounded pool of spring.task.execution.
+ */
+@Log4j2
+@Configuration
+public class RequestExecutionConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "user.execution.mode", havingValue = "async")
+    public ThreadPoolTaskExecutor databaseExecutor(@Value("${user.execution.database-pool-size:0}") int poolSize,
+                                                   @Value("${user.execution.database-queue-capacity}") int queueCapacity,
+                                                   DataSource dataSource) {
+        int threads = poolSize > 0 ? poolSize : connectionPoolSize(dataSource);
+        log.info("Async request execution, database work on {} threads", threads);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("database-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+    /**
+     * Executor of the async MVC work, the streamed responses of the ndjson list and the batch
+     * import. Boot backs off from its own one as soon as any executor is declared, as the hashing
+     * and database pools are, and MVC would then start a new thread for every streamed response
+     * @param builder, the builder configured with spring.task.execution
+     * @return the executor, bounded in threads and queue
+     */
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean
+    public WebMvcConfigurer asyncSupportConfigurer(
+            @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) AsyncTaskExecutor executor) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(executor);
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "user.execution.mode", havingValue = "virtual-threads")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsCustomizer() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        log.info("Requests run on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    /**
+     * Get the size of the connection pool, a thread per connection
+     * @param dataSource, the pool
+     * @return its maximum size
+     */
+    private static int connectionPoolSize(DataSource dataSource) {
+        try {
+            return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Connection pool size unknown, set user.execution.database-pool-size", e);
+        }
+    }
+
+    /**
+     * Get an executor starting a virtual thread per task. Looked up at runtime, the application
+     * is built for Java 11
+     * @return the executor
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("user.execution.mode=virtual-threads needs Java 21 or later, running on "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+}
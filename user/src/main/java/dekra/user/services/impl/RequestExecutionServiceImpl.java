@@ -0,0 +1,44 @@
+package dekra.user.services.impl;
+
+import dekra.user.services.RequestExecutionService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Runs the database work of the requests. In the async execution mode the work goes to the
+ * bounded database pool and the request thread is released, otherwise it runs on the calling
+ * thread and the returned future is already complete.
+ */
+@Service
+public class RequestExecutionServiceImpl implements RequestExecutionService {
+
+    private final Executor executor;
+
+    public RequestExecutionServiceImpl(@Qualifier("databaseExecutor") Optional<Executor> executor) {
+        this.executor = executor.orElse(null);
+    }
+
+    /**
+     * Run the database work of a request
+     * @param work, the work to run
+     * @return the result of the work, completed exceptionally if the work fails
+     * @throws TaskRejectedException if the database pool is saturated
+     */
+    @Override
+    public <T> CompletableFuture<T> execute(Supplier<T> work) {
+        if (executor != null) {
+            return CompletableFuture.supplyAsync(work, executor);
+        }
+        try {
+            return CompletableFuture.completedFuture(work.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package dekra.user.services.impl;
 
+import dekra.user.model.entities.User;
 import dekra.user.repository.UserRepository;
 import lombok.AllArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -16,8 +17,8 @@ public class UserDetailsServiceImpl implements UserDetailsService  {
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
 
-        return userRepository.findByUserName(username).
-                orElseThrow(() -> new UsernameNotFoundException("Username: " + username + " not found"));
+        return userRepository.findByUserName(username)
+                .orElseThrow(() -> new UsernameNotFoundException("Username: " + username + " not found"));
 
         }
 }
\ No newline at end of file
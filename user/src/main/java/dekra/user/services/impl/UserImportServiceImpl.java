@@ -0,0 +1,161 @@
+package dekra.user.services.impl;
+
+import dekra.user.exception.UserAlreadyExistsException;
+import dekra.user.model.entities.User;
+import dekra.user.model.entities.UserImportRequest;
+import dekra.user.model.entities.UserImportResult;
+import dekra.user.model.entities.UserValidationError;
+import dekra.user.services.PasswordHashingService;
+import dekra.user.services.UserImportService;
+import dekra.user.services.UserService;
+import dekra.user.services.UserValidationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@Log4j2
+@Service
+@RequiredArgsConstructor
+public class UserImportServiceImpl implements UserImportService {
+
+    private final UserService userService;
+
+    private final UserValidationService userValidationService;
+
+    private final PasswordHashingService passwordHashingService;
+
+    @Value("${user.batch.size}")
+    private int batchSize;
+
+    /**
+     * Import users in chunks of the configured batch size of rows: each chunk is validated, its passwords
+     * hashed in parallel and the valid users inserted in one transaction as JDBC batches. Only the
+     * current chunk is held in memory, the results are handed over once their chunk is done
+     * @param rows, the users to import, read lazily
+     * @param consumer, receives the result of every row, in the same order
+     * @return the number of rows read
+     */
+    @Override
+    public long importUsers(Iterator<UserImportRequest> rows, Consumer<UserImportResult> consumer) {
+        List<UserImportResult> results = new ArrayList<>(batchSize);
+        List<User> users = new ArrayList<>(batchSize);
+        List<UserImportResult> pendingResults = new ArrayList<>(batchSize);
+        Set<String> usernames = new HashSet<>();
+        long row = 0;
+
+        while (true) {
+            UserImportRequest request;
+            try {
+                if (!rows.hasNext()) {
+                    break;
+                }
+                request = rows.next();
+            } catch (RuntimeException e) {
+                // malformed input, nothing after this point can be read
+                results.add(failed(row + 1, null, e.getLocalizedMessage()));
+                break;
+            }
+            row++;
+
+            User user = new User(request.getUsername(), request.getPassword(), request.getName(), request.getSurname(),
+                    request.getEmail(), request.isActive(), request.getAge(), LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+            List<UserValidationError> validationErrors = userValidationService.validateUser(user);
+            if (!validationErrors.isEmpty()) {
+                results.add(failed(row, request.getUsername(), validationErrors.stream()
+                        .map(error -> error.getError() + ": " + error.getDescription()).collect(Collectors.toList())));
+            } else if (!usernames.add(request.getUsername())) {
+                results.add(failed(row, request.getUsername(), "Username already exists"));
+            } else {
+                UserImportResult result = UserImportResult.builder().row(row).username(request.getUsername()).build();
+                results.add(result);
+                users.add(user);
+                pendingResults.add(result);
+            }
+
+            if (results.size() == batchSize) {
+                persist(users, pendingResults);
+                results.forEach(consumer);
+                results.clear();
+                users.clear();
+                pendingResults.clear();
+                usernames.clear();
+            }
+        }
+        if (!users.isEmpty()) {
+            persist(users, pendingResults);
+        }
+        results.forEach(consumer);
+        log.info("Imported {} rows", row);
+        return row;
+    }
+
+    /**
+     * Hash the passwords of a chunk and insert it. If the chunk is rejected, usually because a
+     * username already exists, the users are inserted one by one to find out which ones fail
+     * @param users, the valid users of the chunk
+     * @param results, their results, to be completed
+     */
+    private void persist(List<User> users, List<UserImportResult> results) {
+        if (users.isEmpty()) {
+            return;
+        }
+        List<String> hashes = passwordHashingService.encodeAll(
+                users.stream().map(User::getPassword).collect(Collectors.toList()));
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setPassword(hashes.get(i));
+        }
+
+        try {
+            List<User> saved = userService.createUsers(users);
+            for (int i = 0; i < saved.size(); i++) {
+                created(results.get(i), saved.get(i).getId());
+            }
+        } catch (DataIntegrityViolationException e) {
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                // the ids were assigned by the rolled back batch
+                user.setId(null);
+                try {
+                    created(results.get(i), userService.createUser(user).getId());
+                } catch (UserAlreadyExistsException ex) {
+                    failed(results.get(i), Collections.singletonList("Username already exists"));
+                } catch (DataIntegrityViolationException ex) {
+                    failed(results.get(i), Collections.singletonList(ex.getMostSpecificCause().getLocalizedMessage()));
+                }
+            }
+        }
+    }
+
+    private static void created(UserImportResult result, Long id) {
+        result.setStatus(UserImportResult.Status.CREATED);
+        result.setId(id);
+    }
+
+    private static void failed(UserImportResult result, List<String> errors) {
+        result.setStatus(UserImportResult.Status.FAILED);
+        result.setErrors(errors);
+    }
+
+    private static UserImportResult failed(long row, String username, List<String> errors) {
+        UserImportResult result = UserImportResult.builder().row(row).username(username).build();
+        failed(result, errors);
+        return result;
+    }
+
+    private static UserImportResult failed(long row, String username, String error) {
+        return failed(row, username, Collections.singletonList(error));
+    }
+}
@@ -1,57 +1,225 @@
 package dekra.user.services.impl;
 
 
+import dekra.user.exception.InvalidUserException;
+import dekra.user.exception.UserAlreadyExistsException;
 import dekra.user.model.entities.User;
+import dekra.user.model.entities.UserCursor;
+import dekra.user.model.entities.UserFilter;
+import dekra.user.model.entities.UserSort;
+import dekra.user.model.entities.UserSummary;
+import dekra.user.model.entities.UserValidationError;
 import dekra.user.repository.UserRepository;
+import dekra.user.repository.UserSpecifications;
 import dekra.user.services.UserService;
+import dekra.user.services.UserValidationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityNotFoundException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+/**
+ * Users use cases. Every method runs in a single transaction, read-only unless it writes: no
+ * flush, no dirty checking snapshots, and a replica connection when there is one. Users
+ * themselves are loaded in read-write transactions, from the primary, as they fill the second
+ * level cache.
+ */
 @Log4j2
 @Service
 @RequiredArgsConstructor
-@Transactional
+@Transactional(readOnly = true)
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
 
+    private final LastLoggingBuffer lastLoggingBuffer;
+
+    private final UserValidationService userValidationService;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    /**
+     * Find an user by its id, usually served from the second level cache. Not read-only: a miss
+     * fills the cache, so it reads from the primary and never from a replica behind it
+     * @param userId, the id of the user
+     * @return the user
+     * @throws EntityNotFoundException if the user does not exist
+     */
     @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Transactional
     public User findUserById(Long userId) {
         return userRepository.findById(userId).orElseThrow(() -> new EntityNotFoundException(String.valueOf(userId)));
     }
 
     @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Transactional
     public User saveUser(User user) {
         return userRepository.save(user);
     }
 
+    /**
+     * Insert a new user. There is no previous lookup, a duplicated username is detected by the
+     * unique index on the username column
+     * @param user, the user to insert
+     * @return the user saved
+     * @throws UserAlreadyExistsException if the username is already taken
+     */
+    @Override
+    @Transactional
+    public User createUser(User user) {
+        try {
+            // ids come from a sequence, so the insert has to be flushed to see the violation here
+            return userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            if (isUserNameViolation(e)) {
+                throw new UserAlreadyExistsException(user.getUsername());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Insert several new users in one transaction. The inserts are sent as JDBC batches
+     * @param users, the users to insert
+     * @return the users saved
+     * @throws DataIntegrityViolationException if any of them can not be inserted, none is saved then
+     */
+    @Override
+    @Transactional
+    public List<User> createUsers(List<User> users) {
+        List<User> saved = userRepository.saveAll(users);
+        userRepository.flush();
+        return saved;
+    }
+
+    /**
+     * Update the given fields of an user with a single statement, the user is not loaded: the
+     * new values are validated on their own and only their columns are written
+     * @param userId, the id of the user
+     * @param name, the new name, null or empty to keep it
+     * @param surname, the new surname, null or empty to keep it
+     * @param active, whether the user is active, null to keep it
+     * @param age, the new age, null to keep it
+     * @param expectedVersion, the version the user must have to be updated, null to update any
+     * @return the summary of the user updated
+     * @throws EntityNotFoundException if the user does not exist
+     * @throws InvalidUserException if any of the new values is invalid, nothing is written then
+     * @throws ObjectOptimisticLockingFailureException if the user has another version, nothing is written then
+     */
+    @Override
+    @Transactional
+    public UserSummary updateUser(Long userId, String name, String surname, Boolean active, Integer age, Long expectedVersion) {
+        name = StringUtils.defaultIfEmpty(name, null);
+        surname = StringUtils.defaultIfEmpty(surname, null);
+
+        List<UserValidationError> validationErrors = new ArrayList<>();
+        if (name != null)
+            validationErrors.addAll(userValidationService.validateValue("name", name));
+        if (surname != null)
+            validationErrors.addAll(userValidationService.validateValue("surname", surname));
+        if (age != null)
+            validationErrors.addAll(userValidationService.validateValue("age", age));
+        if (active != null)
+            validationErrors.addAll(userValidationService.validateValue("active", active));
+        if (!validationErrors.isEmpty()) {
+            throw new InvalidUserException(validationErrors);
+        }
+
+        if (userRepository.patchById(userId, name, surname, active, age, expectedVersion) == 0) {
+            // the version is only checked once the update misses
+            if (expectedVersion != null && userRepository.existsById(userId)) {
+                throw new ObjectOptimisticLockingFailureException(User.class, userId);
+            }
+            throw new EntityNotFoundException(String.valueOf(userId));
+        }
+        return userRepository.findSummaryById(userId).orElseThrow(() -> new EntityNotFoundException(String.valueOf(userId)));
+    }
+
+    /**
+     * Delete an user with a single statement, the user is not loaded first
+     * @param userId, the id of the user
+     * @throws EntityNotFoundException if the user does not exist
+     */
     @Override
+    @Transactional
     public void deleteUser(Long userId) {
-        userRepository.deleteById(userId);
+        if (userRepository.removeById(userId) == 0) {
+            throw new EntityNotFoundException(String.valueOf(userId));
+        }
+    }
+
+    /**
+     * Get a page of the users matching the filters, the database does the filtering and sorting
+     * @param filter, the filters
+     * @param sort, the order of the list
+     * @param after, the position of the last user of the previous page, null for the first page
+     * @param limit, the maximum number of users
+     * @return the users of the page
+     */
+    @Override
+    public List<UserSummary> getUsers(UserFilter filter, UserSort sort, UserCursor after, int limit) {
+        return userRepository.findSummaries(UserSpecifications.matching(filter), sort, after, limit);
+    }
 
+    /**
+     * Read the summary of every user matching the filters through a database cursor. Summaries
+     * are not managed, the persistence context does not grow with the table
+     * @param filter, the filters
+     * @param sort, the order of the users
+     * @param consumer, receives the users
+     */
+    @Override
+    public void streamUsers(UserFilter filter, UserSort sort, Consumer<UserSummary> consumer) {
+        try (Stream<UserSummary> users = userRepository.streamSummaries(UserSpecifications.matching(filter), sort)) {
+            users.forEach(consumer);
+        }
     }
 
+    /**
+     * Record the login of an user. The time is written asynchronously, see {@link LastLoggingBuffer}
+     * @param userId, the id of the user
+     * @param lastLogging, the time of the login
+     */
     @Override
-    public List<User> getUsers() {
-        return userRepository.findAll();
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void recordLogin(Long userId, LocalDateTime lastLogging) {
+        lastLoggingBuffer.record(userId, lastLogging);
     }
 
+    /**
+     * Replace the password of an user. The user usually comes from the second level cache and,
+     * being a dynamic update, only the password column is written
+     * @param userId, the id of the user
+     * @param password, the new password hash
+     */
     @Override
-    public boolean findByUserName(String username) {
-        return userRepository.findByUserName(username).isPresent();
+    @Transactional
+    public void updatePassword(Long userId, String password) {
+        findUserById(userId).setPassword(password);
+    }
+
+    private static boolean isUserNameViolation(DataIntegrityViolationException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof ConstraintViolationException) {
+            String constraintName = ((ConstraintViolationException) cause).getConstraintName();
+            return constraintName != null && constraintName.toUpperCase().contains(User.USER_NAME_INDEX);
+        }
+        return false;
     }
 
 }
\ No newline at end of file
@@ -1 +1 @@
-INSERT INTO USER VALUES (1,true,22,NULL, 'myemail@user.com',NULL,'myname','admin','mysurname','admin');
\ No newline at end of file
+INSERT INTO USER (ID, ACTIVE, AGE, CREATION_DATE, EMAIL, LAST_LOGGING, NAME, PASSWORD, SURNAME, USER_NAME, VERSION) VALUES (NEXT VALUE FOR USER_SEQ, true, 22, NULL, 'myemail@user.com', NULL, 'myname', 'admin', 'mysurname', 'admin', 0);
\ No newline at end of file
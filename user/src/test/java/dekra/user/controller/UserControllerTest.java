@@ -0,0 +1,134 @@
+package dekra.user.controller;
+
+import dekra.user.model.entities.User;
+import dekra.user.repository.UserRepository;
+import dekra.user.security.JWTTokenIssuer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDateTime;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Conditional requests of a single user: its ETag is its version, an unchanged user is answered
+ * 304 to If-None-Match and an update with the If-Match of another version fails with 412
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JWTTokenIssuer tokenIssuer;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        user = userRepository.saveAndFlush(new User("etag" + System.nanoTime(), "password", "Name", "Surname",
+                "etag@user.com", true, 30, LocalDateTime.of(2021, 9, 1, 10, 0)));
+    }
+
+    @AfterEach
+    void removeUser() {
+        userRepository.removeById(user.getId());
+    }
+
+    @Test
+    void userIsAnsweredWithItsVersionAsETag() throws Exception {
+        perform(get("/api/user/{id}", user.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(jsonPath("$.userName").value(user.getUsername()))
+                .andExpect(jsonPath("$.version").doesNotExist());
+    }
+
+    @Test
+    void unchangedUserIsNotSentAgain() throws Exception {
+        perform(get("/api/user/{id}", user.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andExpect(content().string(""));
+        perform(get("/api/user/{id}", user.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"7\", W/\"0\""))
+                .andExpect(status().isNotModified());
+        perform(get("/api/user/{id}", user.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"7\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.userName").value(user.getUsername()));
+    }
+
+    @Test
+    void missingUserIsNotFound() throws Exception {
+        perform(get("/api/user/{id}", Long.MAX_VALUE))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.errors[0]").value("User with id: " + Long.MAX_VALUE + " can't be found"));
+    }
+
+    @Test
+    void updateOfAnotherVersionFails() throws Exception {
+        perform(authorized(patch("/api/user/update/{id}", user.getId()).param("name", "First").header(HttpHeaders.IF_MATCH, "\"0\"")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.name").value("First"));
+
+        // the change was made against the version the client had
+        perform(authorized(patch("/api/user/update/{id}", user.getId()).param("name", "Second").header(HttpHeaders.IF_MATCH, "\"0\"")))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.errors[0]").value("Error updating user, user with id: " + user.getId() + " has changed, get it again"));
+        perform(authorized(patch("/api/user/update/{id}", user.getId()).param("name", "Second").header(HttpHeaders.IF_MATCH, "W/\"1\"")))
+                .andExpect(status().isPreconditionFailed());
+        perform(get("/api/user/{id}", user.getId()))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.name").value("First"));
+    }
+
+    @Test
+    void updateOfAnyVersionOrOfAMissingUser() throws Exception {
+        perform(authorized(patch("/api/user/update/{id}", user.getId()).param("name", "Any").header(HttpHeaders.IF_MATCH, "*")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+        // a missing user is not a changed one
+        perform(authorized(patch("/api/user/update/{id}", Long.MAX_VALUE).param("name", "Any").header(HttpHeaders.IF_MATCH, "\"0\"")))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void updateNeedsAToken() throws Exception {
+        mockMvc.perform(patch("/api/user/update/{id}", user.getId()).param("name", "Other").header(HttpHeaders.IF_MATCH, "\"0\""))
+                .andExpect(status().isForbidden());
+    }
+
+    private MockHttpServletRequestBuilder authorized(MockHttpServletRequestBuilder request) {
+        return request.header(HttpHeaders.AUTHORIZATION, tokenIssuer.issue("admin"));
+    }
+
+    /**
+     * Send a request to an asynchronous endpoint and dispatch its result
+     */
+    private ResultActions perform(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult started = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+        return mockMvc.perform(asyncDispatch(started));
+    }
+}
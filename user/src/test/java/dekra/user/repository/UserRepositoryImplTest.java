@@ -0,0 +1,176 @@
+package dekra.user.repository;
+
+import dekra.user.controller.ContinuationToken;
+import dekra.user.model.entities.User;
+import dekra.user.model.entities.UserCursor;
+import dekra.user.model.entities.UserSort;
+import dekra.user.model.entities.UserSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Keyset pages of {@link UserRepositoryImpl#findSummaries}, resumed through continuation tokens
+ * as the user list does, against the order the database would give the whole list in. And the
+ * single statement updates and deletes, whose row counts tell the controller what happened.
+ */
+@SpringBootTest
+@Transactional
+class UserRepositoryImplTest {
+
+    private static final String EMAIL = "keyset@user.com";
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2021, 9, 1, 10, 0);
+
+    /**
+     * Only the users of these tests
+     */
+    private static final Specification<User> TEST_USERS = (user, query, builder) -> builder.equal(user.get("email"), EMAIL);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private List<UserSummary> users;
+
+    @BeforeEach
+    void createUsers() {
+        // ties and missing values in every sort field but the id
+        List<User> created = new ArrayList<>();
+        created.add(user("b", 30, DAY));
+        created.add(user(null, null, null));
+        created.add(user("a", 20, DAY.plusDays(1)));
+        created.add(user("b", 30, DAY));
+        created.add(user("c", null, null));
+        created.add(user(null, 40, DAY.plusDays(1)));
+        created.add(user("a", 20, DAY));
+        created.add(user("b", 30, null));
+        created.add(user("c", null, DAY.minusDays(1)));
+        users = userRepository.saveAllAndFlush(created).stream().map(UserSummary::of).collect(Collectors.toList());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"id", "id,desc", "name", "name,desc", "surname", "surname,desc", "age", "age,desc",
+            "creationDate", "creationDate,desc", "lastLogging", "lastLogging,desc"})
+    void pagesFollowTheSortWithTiesAndMissingValues(String sortParameter) {
+        UserSort sort = UserSort.parse(sortParameter);
+        for (int pageSize = 1; pageSize <= users.size(); pageSize++) {
+            assertThat(ids(pageThrough(sort, pageSize))).as("%s in pages of %s", sort, pageSize)
+                    .containsExactlyElementsOf(ids(expectedOrder(sort)));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"age", "age,desc", "name", "name,desc"})
+    void pageResumesAfterAUserWithoutTheSortField(String sortParameter) {
+        UserSort sort = UserSort.parse(sortParameter);
+        List<UserSummary> expected = expectedOrder(sort);
+        for (int i = 0; i < expected.size(); i++) {
+            UserSummary last = expected.get(i);
+            if (sort.valueOf(last) != null) {
+                continue;
+            }
+            UserCursor after = ContinuationToken.decode(ContinuationToken.encode(sort, last), sort);
+            assertThat(ids(userRepository.findSummaries(TEST_USERS, sort, after, users.size())))
+                    .as("%s after user %s", sort, last.getId())
+                    .containsExactlyElementsOf(ids(expected.subList(i + 1, expected.size())));
+        }
+    }
+
+    @Test
+    void patchWritesTheGivenColumnsAndBumpsTheVersion() {
+        UserSummary user = users.get(0);
+
+        assertThat(userRepository.patchById(user.getId(), "patched", null, false, null, null)).isEqualTo(1);
+
+        UserSummary patched = userRepository.findSummaryById(user.getId()).orElseThrow();
+        assertThat(patched.getName()).isEqualTo("patched");
+        assertThat(patched.isActive()).isFalse();
+        assertThat(patched.getSurname()).isEqualTo(user.getSurname());
+        assertThat(patched.getAge()).isEqualTo(user.getAge());
+        assertThat(patched.getVersion()).isEqualTo(user.getVersion() + 1);
+    }
+
+    @Test
+    void patchOfAnotherVersionOrOfAMissingUserWritesNothing() {
+        UserSummary user = users.get(0);
+
+        assertThat(userRepository.patchById(user.getId(), "patched", null, null, null, user.getVersion() + 1)).isZero();
+        assertThat(userRepository.patchById(Long.MAX_VALUE, "patched", null, null, null, null)).isZero();
+        UserSummary unchanged = userRepository.findSummaryById(user.getId()).orElseThrow();
+        assertThat(unchanged.getName()).isEqualTo(user.getName());
+        assertThat(unchanged.getVersion()).isEqualTo(user.getVersion());
+
+        assertThat(userRepository.patchById(user.getId(), "patched", null, null, null, user.getVersion())).isEqualTo(1);
+        assertThat(userRepository.findSummaryById(user.getId()).orElseThrow().getVersion()).isEqualTo(user.getVersion() + 1);
+    }
+
+    @Test
+    void removeDeletesTheUserOnce() {
+        Long id = users.get(0).getId();
+
+        assertThat(userRepository.removeById(id)).isEqualTo(1);
+        assertThat(userRepository.findSummaryById(id)).isEmpty();
+        assertThat(userRepository.removeById(id)).isZero();
+    }
+
+    /**
+     * Read every page of the list, each one resumed with the token of the previous one
+     */
+    private List<UserSummary> pageThrough(UserSort sort, int pageSize) {
+        List<UserSummary> listed = new ArrayList<>();
+        UserCursor after = null;
+        while (true) {
+            // a wrong position would list some users again and again
+            assertThat(listed).as("%s listed more users than there are", sort).hasSizeLessThanOrEqualTo(users.size());
+            List<UserSummary> page = userRepository.findSummaries(TEST_USERS, sort, after, pageSize + 1);
+            if (page.size() <= pageSize) {
+                listed.addAll(page);
+                return listed;
+            }
+            listed.addAll(page.subList(0, pageSize));
+            String token = ContinuationToken.encode(sort, page.get(pageSize - 1));
+            after = ContinuationToken.decode(token, sort);
+        }
+    }
+
+    /**
+     * The users in the order of a sort: ascending puts the users without the field first, the id
+     * breaks ties, and descending is the exact reverse
+     */
+    @SuppressWarnings("unchecked")
+    private List<UserSummary> expectedOrder(UserSort sort) {
+        Comparator<UserSummary> byField = Comparator.comparing(user -> (Comparable<Object>) sort.valueOf(user),
+                Comparator.nullsFirst(Comparator.naturalOrder()));
+        List<UserSummary> ordered = users.stream()
+                .sorted(byField.thenComparing(UserSummary::getId))
+                .collect(Collectors.toList());
+        if (!sort.isAscending()) {
+            Collections.reverse(ordered);
+        }
+        return ordered;
+    }
+
+    private static List<Long> ids(List<UserSummary> users) {
+        return users.stream().map(UserSummary::getId).collect(Collectors.toList());
+    }
+
+    private static User user(String name, Integer age, LocalDateTime creationDate) {
+        User user = new User("keyset" + System.nanoTime(), "password", name, "Keyset", EMAIL, true, age, creationDate);
+        user.setLastLogging(creationDate == null ? null : creationDate.plusHours(1));
+        return user;
+    }
+}
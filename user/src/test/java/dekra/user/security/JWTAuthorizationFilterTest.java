@@ -0,0 +1,122 @@
+package dekra.user.security;
+
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tokens sent to a protected route: valid ones authenticate the request, the others are answered
+ * 403 or leave it unauthenticated
+ */
+class JWTAuthorizationFilterTest {
+
+    private static final String SECRET = "mySecretKey";
+
+    private static final String ISSUER = "user";
+
+    private final JWTDenylist denylist = new JWTDenylist(100, "");
+
+    private final JWTAuthorizationFilter filter = new JWTAuthorizationFilter(SECRET, ISSUER, new JWTAuthenticationCache(100),
+            denylist, SecurityConfiguration.ROUTES, new SimpleMeterRegistry());
+
+    private final AtomicReference<Authentication> authentication = new AtomicReference<>();
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void issuedTokenAuthenticatesTheRequest() throws Exception {
+        MockHttpServletResponse response = filter(new JWTTokenIssuer(SECRET, Duration.ofMinutes(10), ISSUER).issue("admin"));
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(authentication.get().getName()).isEqualTo("admin");
+        assertThat(((JWTTokenDetails) authentication.get().getDetails()).getId()).isNotEmpty();
+    }
+
+    @Test
+    void tokenWithoutExpirationIsRejected() throws Exception {
+        MockHttpServletResponse response = filter(token().setExpiration(null));
+
+        assertThat(response.getStatus()).isEqualTo(403);
+        assertThat(authentication.get()).isNull();
+    }
+
+    @Test
+    void tokenWithoutIdIsRejected() throws Exception {
+        MockHttpServletResponse response = filter(token().setId(null));
+
+        assertThat(response.getStatus()).isEqualTo(403);
+        assertThat(authentication.get()).isNull();
+    }
+
+    @Test
+    void tokenOfAnotherIssuerIsRejected() throws Exception {
+        assertThat(filter(token().setIssuer("user-reactive")).getStatus()).isEqualTo(403);
+        assertThat(filter(token().setIssuer(null)).getStatus()).isEqualTo(403);
+    }
+
+    @Test
+    void expiredTokenIsRejected() throws Exception {
+        assertThat(filter(token().setExpiration(new Date(System.currentTimeMillis() - 60000))).getStatus()).isEqualTo(403);
+    }
+
+    @Test
+    void revokedTokenLeavesTheRequestUnauthenticated() throws Exception {
+        String token = JWTTokenIssuer.PREFIX + token().compact();
+        filter(token);
+        JWTTokenDetails details = (JWTTokenDetails) authentication.get().getDetails();
+
+        denylist.revoke(details.getId(), details.getExpiration());
+        MockHttpServletResponse response = filter(token);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(authentication.get()).isNull();
+    }
+
+    /**
+     * A valid token, to be spoiled by each test
+     */
+    private static JwtBuilder token() {
+        return Jwts.builder()
+                .setId("token-id")
+                .setIssuer(ISSUER)
+                .setSubject("admin")
+                .claim("authorities", Collections.singletonList("ROLE_USER"))
+                .setExpiration(new Date(System.currentTimeMillis() + 600000))
+                .signWith(SignatureAlgorithm.HS512, SECRET.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private MockHttpServletResponse filter(JwtBuilder token) throws Exception {
+        return filter(JWTTokenIssuer.PREFIX + token.compact());
+    }
+
+    /**
+     * Send a token to a protected route, the authentication it runs with is kept
+     */
+    private MockHttpServletResponse filter(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("DELETE", "/api/user/delete/99");
+        request.setServletPath("/api/user/delete/99");
+        request.addHeader("Authorization", token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        authentication.set(null);
+        filter.doFilter(request, response, (req, res) -> authentication.set(SecurityContextHolder.getContext().getAuthentication()));
+        return response;
+    }
+}
@@ -0,0 +1,75 @@
+package dekra.user.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void createFilter() throws Exception {
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setCapacity(1);
+        limit.setRefillPerSecond(0.2);
+        RateLimitProperties.Endpoint login = new RateLimitProperties.Endpoint();
+        login.setMethod(HttpMethod.POST);
+        login.setPath("/auth/login");
+        login.setIp(limit);
+        login.setUsername(limit);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getEndpoints().put("login", login);
+        filter = new RateLimitFilter(properties, new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/auth/login", "/auth/login/", "//auth//login", "/auth/login//"})
+    void everySpellingOfThePathIsLimited(String path) throws Exception {
+        assertThat(filter("POST", "/auth/login", "127.0.0.1", null).getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse response = filter("POST", path, "127.0.0.1", null);
+
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("5");
+    }
+
+    @Test
+    void usernameIsLimitedFromAnyClient() throws Exception {
+        assertThat(filter("POST", "/auth/login", "10.0.0.1", "admin").getStatus()).isEqualTo(200);
+
+        assertThat(filter("POST", "/auth/login/", "10.0.0.2", "admin").getStatus()).isEqualTo(429);
+        assertThat(filter("POST", "/auth/login/", "10.0.0.3", "other").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void otherMethodsAndPathsAreNotLimited() throws Exception {
+        filter("POST", "/auth/login", "127.0.0.1", null);
+
+        assertThat(filter("GET", "/auth/login/", "127.0.0.1", null).getStatus()).isEqualTo(200);
+        assertThat(filter("POST", "/auth/logout", "127.0.0.1", null).getStatus()).isEqualTo(200);
+        assertThat(filter("POST", "/auth/login/more", "127.0.0.1", null).getStatus()).isEqualTo(200);
+    }
+
+    private MockHttpServletResponse filter(String method, String path, String remoteAddress, String username) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setServletPath(path);
+        request.setRemoteAddr(remoteAddress);
+        if (username != null) {
+            request.setParameter("username", username);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,123 @@
+package dekra.user.security;
+
+import dekra.user.security.RouteClassifier.Route;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The routes of {@link SecurityConfiguration#ROUTES} against the ant matchers the access rules
+ * were written with, tried in order as spring security did
+ */
+class RouteClassifierTest {
+
+    private static final String[] AUTH_WHITELIST = {
+            "/v2/api-docs",
+            "/api/api-docs/**",
+            "/api/swagger-ui.html",
+            "/swagger-resources",
+            "/swagger-resources/**",
+            "/swagger-ui/**",
+            "/webjars/**"
+    };
+
+    /**
+     * The ant matcher rules, the first one matching decides. Logout needs a token since tokens
+     * can be revoked, every other rule is the one of the ant matchers
+     */
+    private static final List<Map.Entry<AntPathRequestMatcher, Route>> ANT_RULES = Stream.concat(
+            Stream.of(AUTH_WHITELIST).map(pattern -> Map.entry(new AntPathRequestMatcher(pattern), Route.STATIC)),
+            Stream.of(
+                    Map.entry(new AntPathRequestMatcher("/auth/logout", "POST"), Route.PROTECTED),
+                    Map.entry(new AntPathRequestMatcher("/auth/**", "POST"), Route.PUBLIC),
+                    Map.entry(new AntPathRequestMatcher("/api/user/batch", "POST"), Route.PROTECTED),
+                    Map.entry(new AntPathRequestMatcher("/api/**", "GET"), Route.PUBLIC),
+                    Map.entry(new AntPathRequestMatcher("/api/**", "DELETE"), Route.PROTECTED),
+                    Map.entry(new AntPathRequestMatcher("/api/**", "PATCH"), Route.PROTECTED)))
+            .collect(Collectors.toList());
+
+    private static final String[] PATHS = {
+            "/", "/auth", "/auth/login", "/auth/logout", "/auth/logout/now", "/auth/other/deep/path",
+            "/api", "/api/user", "/api/user/1", "/api/user/list", "/api/user/stream", "/api/user/create",
+            "/api/user/batch", "/api/user/batch/1", "/api/user/update/1", "/api/user/delete/1", "/api/h2",
+            "/v2/api-docs", "/v2/api-docs/more", "/api/api-docs", "/api/api-docs/swagger-config",
+            "/api/swagger-ui.html", "/swagger-resources", "/swagger-resources/configuration/ui",
+            "/swagger-ui", "/swagger-ui/index.html", "/webjars/springfox/springfox.js",
+            "/actuator/prometheus", "/authentication", "/apis/user", "/other"
+    };
+
+    private static final HttpMethod[] METHODS = {
+            HttpMethod.GET, HttpMethod.HEAD, HttpMethod.POST, HttpMethod.PUT, HttpMethod.PATCH, HttpMethod.DELETE, HttpMethod.OPTIONS
+    };
+
+    static Stream<Arguments> requests() {
+        return Stream.of(METHODS).flatMap(method -> Stream.of(PATHS).map(path -> Arguments.of(method, path)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("requests")
+    void routeIsTheOneOfTheAntMatchers(HttpMethod method, String path) {
+        assertThat(SecurityConfiguration.ROUTES.classify(request(method, path))).isEqualTo(antRoute(method, path));
+    }
+
+    /**
+     * Spring MVC serves /api/user/batch/ as /api/user/batch, the route has to be the same
+     */
+    @ParameterizedTest
+    @MethodSource("requests")
+    void emptySegmentsDoNotChangeTheRoute(HttpMethod method, String path) {
+        Route route = antRoute(method, path);
+
+        assertThat(SecurityConfiguration.ROUTES.classify(request(method, path + "/"))).as("%s %s/", method, path).isEqualTo(route);
+        assertThat(SecurityConfiguration.ROUTES.classify(request(method, "/" + path))).as("%s /%s", method, path).isEqualTo(route);
+        assertThat(SecurityConfiguration.ROUTES.classify(request(method, path.replace("/", "//")))).as("%s %s", method, path).isEqualTo(route);
+    }
+
+    @Test
+    void mostSpecificRuleWins() {
+        RouteClassifier classifier = new RouteClassifier()
+                .add(Route.PROTECTED, "/a/**")
+                .add(HttpMethod.GET, Route.PUBLIC, "/a/b/**")
+                .add(Route.STATIC, "/a/b/c");
+
+        assertThat(classifier.classify(request(HttpMethod.POST, "/a/b/d"))).isEqualTo(Route.PROTECTED);
+        assertThat(classifier.classify(request(HttpMethod.GET, "/a/b/d"))).isEqualTo(Route.PUBLIC);
+        assertThat(classifier.classify(request(HttpMethod.GET, "/a/b"))).isEqualTo(Route.PUBLIC);
+        assertThat(classifier.classify(request(HttpMethod.POST, "/a/b/c"))).isEqualTo(Route.STATIC);
+        assertThat(classifier.classify(request(HttpMethod.POST, "/b"))).isEqualTo(Route.PUBLIC);
+    }
+
+    @Test
+    void unknownMethodsOnlyFollowTheRulesOfEveryMethod() {
+        RouteClassifier classifier = new RouteClassifier()
+                .add(Route.PROTECTED, "/a/**")
+                .add(HttpMethod.GET, Route.PUBLIC, "/a/b");
+        MockHttpServletRequest request = request(HttpMethod.GET, "/a/b");
+        request.setMethod("PROPFIND");
+
+        assertThat(classifier.classify(request)).isEqualTo(Route.PROTECTED);
+    }
+
+    private static Route antRoute(HttpMethod method, String path) {
+        MockHttpServletRequest request = request(method, path);
+        return ANT_RULES.stream().filter(rule -> rule.getKey().matches(request)).map(Map.Entry::getValue)
+                .findFirst().orElse(Route.PUBLIC);
+    }
+
+    private static MockHttpServletRequest request(HttpMethod method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method.name(), path);
+        request.setServletPath(path);
+        return request;
+    }
+}
@@ -0,0 +1,51 @@
+package dekra.user.services.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The pending logins are committed by every flush, the one on shutdown included, although the
+ * pool hands out connections with auto-commit off
+ */
+// no scheduled flush while the tests run, they flush by themselves
+@SpringBootTest(properties = "user.last-logging.flush-interval=3600000")
+class LastLoggingBufferTest {
+
+    private static final String LAST_LOGGING = "SELECT LAST_LOGGING FROM USER WHERE USER_NAME = 'admin'";
+
+    @Autowired
+    private LastLoggingBuffer lastLoggingBuffer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void scheduledFlushCommits() {
+        LocalDateTime login = LocalDateTime.of(2021, 9, 1, 10, 0);
+        lastLoggingBuffer.record(adminId(), login);
+
+        lastLoggingBuffer.flush();
+
+        assertThat(jdbcTemplate.queryForObject(LAST_LOGGING, LocalDateTime.class)).isEqualTo(login);
+    }
+
+    @Test
+    void shutdownFlushCommits() {
+        LocalDateTime login = LocalDateTime.of(2021, 9, 2, 10, 0);
+        lastLoggingBuffer.record(adminId(), login);
+
+        lastLoggingBuffer.flushOnShutdown();
+
+        assertThat(jdbcTemplate.queryForObject(LAST_LOGGING, LocalDateTime.class)).isEqualTo(login);
+    }
+
+    private Long adminId() {
+        return jdbcTemplate.queryForObject("SELECT ID FROM USER WHERE USER_NAME = 'admin'", Long.class);
+    }
+}
@@ -0,0 +1,32 @@
+package dekra.user.services.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The streamed responses run on the bounded pool, not on a thread started for each of them
+ */
+@SpringBootTest
+class RequestExecutionConfigurationTest {
+
+    @Autowired
+    private RequestMappingHandlerAdapter handlerAdapter;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private ThreadPoolTaskExecutor applicationTaskExecutor;
+
+    @Test
+    void asyncRequestsRunOnTheBoundedPool() {
+        assertThat(ReflectionTestUtils.getField(handlerAdapter, "taskExecutor")).isSameAs(applicationTaskExecutor);
+        assertThat(applicationTaskExecutor.getMaxPoolSize()).isEqualTo(16);
+        assertThat(applicationTaskExecutor.getThreadPoolExecutor().getQueue().remainingCapacity()).isEqualTo(256);
+    }
+}